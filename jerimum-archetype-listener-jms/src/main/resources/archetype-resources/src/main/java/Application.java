@@ -3,6 +3,7 @@
 #set($symbol_escape='\')
 package ${package};
 
+import java.io.File;
 import java.io.Serializable;
 
 import javax.jms.ConnectionFactory;
@@ -12,6 +13,7 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -28,6 +30,14 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSReplyMode;
+import br.com.jerimum.fw.jms.claimcheck.JMSClaimCheck;
+import br.com.jerimum.fw.jms.listener.JMSAdaptiveConcurrencyController;
+import br.com.jerimum.fw.jms.listener.JMSBatchMessageListenerContainer;
+import br.com.jerimum.fw.jms.listener.JMSClaimCheckMessageListener;
+import br.com.jerimum.fw.jms.listener.JMSExpirationGuardMessageListener;
+import br.com.jerimum.fw.jms.listener.JMSRetryMessageListener;
+import br.com.jerimum.fw.jms.pool.JMSPooledConnectionFactory;
 import br.com.jerimum.fw.logging.LoggerUtils;
 import ${package}.config.ApplicationConfig;
 import ${package}.jms.listener.HelloWorldMessageListener;
@@ -87,6 +97,18 @@ public class Application implements InitializingBean, Serializable {
         return jmsConnectionFactory;
     }
 
+    @Bean(name = "jmsPooledConnectionFactory")
+    @Autowired
+    public JMSPooledConnectionFactory pooledConnectionFactory(
+        @Qualifier("jmsConnectionFactory") ConnectionFactory connectionFactory) {
+
+        JMSPooledConnectionFactory pooledConnectionFactory = new JMSPooledConnectionFactory(connectionFactory);
+        pooledConnectionFactory.setMaxConnections(appConfig.getAppConfigJms().getPoolMaxConnections());
+        pooledConnectionFactory.setSessionCacheSize(appConfig.getAppConfigJms().getPoolSessionCacheSize());
+        pooledConnectionFactory.setCheckoutTimeout(appConfig.getAppConfigJms().getPoolCheckoutTimeout());
+        return pooledConnectionFactory;
+    }
+
     @Bean(name = "requestQueue")
     public Queue requestQueue() throws MessageException {
 
@@ -138,26 +160,110 @@ public class Application implements InitializingBean, Serializable {
         }
     }
 
+    @Bean(name = "deadLetterQueue")
+    public Queue deadLetterQueue() throws MessageException {
+
+        try {
+
+            Context ctx = new InitialContext();
+            Queue deadLetterQueue = (Queue) ctx.lookup(appConfig.getAppConfigJms().getDeadLetterQueueName());
+            LoggerUtils.logDebug(this.getClass(), "Looking up jms dead-letter queue: '{}' -> '{}'",
+                appConfig.getAppConfigJms().getDeadLetterQueueName(), deadLetterQueue.getQueueName());
+
+            return deadLetterQueue;
+
+        } catch (Exception e) {
+            throw new MessageException(e);
+        }
+    }
+
     @Bean(name = "jmsTimeout")
     public Long jmsTimeout() {
         return Long.valueOf(appConfig.getAppConfigJms().getTimeout());
     }
 
+    @Bean(name = "jmsReplyMode")
+    public JMSReplyMode jmsReplyMode() {
+        return JMSReplyMode.valueOf(appConfig.getAppConfigJms().getReplyMode());
+    }
+
+    @Bean(name = "jmsClaimCheck")
+    public JMSClaimCheck claimCheck() {
+        return new JMSClaimCheck(new File(appConfig.getAppConfigJms().getClaimCheckDirectory()));
+    }
+
     @Bean
     @Autowired
-    public DefaultMessageListenerContainer helloWorldMessageListenerContainer(ConnectionFactory connectionFactory,
-        @Qualifier("listenerQueue") Queue destinationQueue, HelloWorldMessageListener messageListener)
+    public JMSClaimCheckMessageListener helloWorldClaimCheckMessageListener(
+        @Qualifier("jmsClaimCheck") JMSClaimCheck claimCheck, HelloWorldMessageListener messageListener) {
+        return new JMSClaimCheckMessageListener(messageListener, claimCheck);
+    }
+
+    @Bean
+    @Autowired
+    public JMSRetryMessageListener helloWorldRetryMessageListener(
+        @Qualifier("jmsPooledConnectionFactory") ConnectionFactory connectionFactory,
+        @Qualifier("deadLetterQueue") Queue deadLetterQueue,
+        @Qualifier("helloWorldClaimCheckMessageListener") JMSClaimCheckMessageListener messageListener) {
+
+        JMSRetryMessageListener retryMessageListener = new JMSRetryMessageListener(messageListener, connectionFactory,
+            deadLetterQueue);
+        retryMessageListener.setMaxAttempts(appConfig.getAppConfigJms().getRetryMaxAttempts());
+        retryMessageListener.setInitialInterval(appConfig.getAppConfigJms().getRetryInitialInterval());
+        retryMessageListener.setMultiplier(appConfig.getAppConfigJms().getRetryMultiplier());
+        retryMessageListener.setMaxInterval(appConfig.getAppConfigJms().getRetryMaxInterval());
+        retryMessageListener.setScheduledDelayProperty(
+            StringUtils.trimToNull(appConfig.getAppConfigJms().getRetryScheduledDelayProperty()));
+        retryMessageListener.setInMemoryBackoff(appConfig.getAppConfigJms().getRetryInMemoryBackoff().booleanValue());
+        return retryMessageListener;
+    }
+
+    @Bean
+    @Autowired
+    public JMSExpirationGuardMessageListener helloWorldExpirationGuardMessageListener(
+        @Qualifier("helloWorldRetryMessageListener") JMSRetryMessageListener messageListener) {
+
+        JMSExpirationGuardMessageListener expirationGuard = new JMSExpirationGuardMessageListener(messageListener);
+        expirationGuard.setClockSkewTolerance(appConfig.getAppConfigJms().getListenerClockSkewTolerance());
+        return expirationGuard;
+    }
+
+    @Bean
+    @Autowired
+    public DefaultMessageListenerContainer helloWorldMessageListenerContainer(
+        @Qualifier("jmsPooledConnectionFactory") JMSPooledConnectionFactory connectionFactory,
+        @Qualifier("listenerQueue") Queue destinationQueue,
+        @Qualifier("helloWorldExpirationGuardMessageListener") JMSExpirationGuardMessageListener messageListener)
             throws JMSException {
 
-        DefaultMessageListenerContainer listenerContainer = new DefaultMessageListenerContainer();
-        listenerContainer.setConnectionFactory(connectionFactory);
+        JMSBatchMessageListenerContainer listenerContainer = new JMSBatchMessageListenerContainer();
+        // THE CONSUMER SESSIONS ARE NOT COUNTED IN THE SESSIONS OF THE POOL (jms.pool.sessionCacheSize)
+        listenerContainer.setConnectionFactory(connectionFactory.getListenerConnectionFactory());
         listenerContainer.setDestinationName(destinationQueue.getQueueName());
         listenerContainer.setMessageListener(messageListener);
         listenerContainer.setConcurrentConsumers(appConfig.getAppConfigJms().getConcurrentConsumers().intValue());
         listenerContainer.setMaxConcurrentConsumers(appConfig.getAppConfigJms().getMaxConcurrentConsumers().intValue());
+        listenerContainer.setBatchSize(appConfig.getAppConfigJms().getListenerBatchSize());
+        listenerContainer.setBatchTimeout(appConfig.getAppConfigJms().getListenerBatchTimeout());
         return listenerContainer;
     }
 
+    @Bean
+    @Autowired
+    public JMSAdaptiveConcurrencyController helloWorldConcurrencyController(
+        @Qualifier("helloWorldMessageListenerContainer") DefaultMessageListenerContainer listenerContainer,
+        @Qualifier("listenerQueue") Queue listenerQueue) {
+
+        JMSAdaptiveConcurrencyController controller = new JMSAdaptiveConcurrencyController(listenerContainer,
+            listenerQueue);
+        controller.setMinConsumers(appConfig.getAppConfigJms().getConcurrentConsumers().intValue());
+        controller.setMaxConsumers(appConfig.getAppConfigJms().getMaxConcurrentConsumers().intValue());
+        controller.setSampleInterval(appConfig.getAppConfigJms().getConcurrencySampleInterval());
+        controller.setTargetLatency(appConfig.getAppConfigJms().getConcurrencyTargetLatency());
+        controller.setBacklogPerConsumer(appConfig.getAppConfigJms().getConcurrencyBacklogPerConsumer());
+        return controller;
+    }
+
     @Bean
     public ThreadPoolTaskExecutor taskExecutor() {
         ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
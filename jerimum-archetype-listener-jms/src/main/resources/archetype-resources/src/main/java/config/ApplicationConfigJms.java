@@ -40,6 +40,9 @@ public class ApplicationConfigJms implements Serializable {
     @Value("${jms.listenerQueueName}")
     private String listenerQueueName;
 
+    @Value("${symbol_dollar}{jms.deadLetterQueueName:java:comp/env/jms/QUEUE.HELLO.WORLD.DLQ}")
+    private String deadLetterQueueName;
+
     @Value("${jms.timeout}")
     private Long timeout;
 
@@ -49,4 +52,55 @@ public class ApplicationConfigJms implements Serializable {
     @Value("${jms.maxConcurrentConsumers}")
     private Long maxConcurrentConsumers;
 
+    @Value("${symbol_dollar}{jms.pool.maxConnections:1}")
+    private Integer poolMaxConnections;
+
+    @Value("${symbol_dollar}{jms.pool.sessionCacheSize:10}")
+    private Integer poolSessionCacheSize;
+
+    @Value("${symbol_dollar}{jms.pool.checkoutTimeout:30000}")
+    private Long poolCheckoutTimeout;
+
+    @Value("${symbol_dollar}{jms.replyMode:SELECTOR}")
+    private String replyMode;
+
+    @Value("${symbol_dollar}{jms.listener.batchSize:10}")
+    private Integer listenerBatchSize;
+
+    @Value("${symbol_dollar}{jms.listener.batchTimeout:100}")
+    private Long listenerBatchTimeout;
+
+    @Value("${symbol_dollar}{jms.listener.clockSkewTolerance:0}")
+    private Long listenerClockSkewTolerance;
+
+    @Value("${symbol_dollar}{jms.concurrency.sampleInterval:5000}")
+    private Long concurrencySampleInterval;
+
+    @Value("${symbol_dollar}{jms.concurrency.targetLatency:1000}")
+    private Long concurrencyTargetLatency;
+
+    @Value("${symbol_dollar}{jms.concurrency.backlogPerConsumer:100}")
+    private Integer concurrencyBacklogPerConsumer;
+
+    @Value("${symbol_dollar}{jms.retry.maxAttempts:5}")
+    private Integer retryMaxAttempts;
+
+    @Value("${symbol_dollar}{jms.retry.initialInterval:1000}")
+    private Long retryInitialInterval;
+
+    @Value("${symbol_dollar}{jms.retry.multiplier:2.0}")
+    private Double retryMultiplier;
+
+    @Value("${symbol_dollar}{jms.retry.maxInterval:60000}")
+    private Long retryMaxInterval;
+
+    @Value("${symbol_dollar}{jms.retry.scheduledDelayProperty:}")
+    private String retryScheduledDelayProperty;
+
+    @Value("${symbol_dollar}{jms.retry.inMemoryBackoff:true}")
+    private Boolean retryInMemoryBackoff;
+
+    @Value("${symbol_dollar}{jms.claimCheck.directory:${symbol_dollar}{java.io.tmpdir}/jerimum-claim-check}")
+    private String claimCheckDirectory;
+
 }
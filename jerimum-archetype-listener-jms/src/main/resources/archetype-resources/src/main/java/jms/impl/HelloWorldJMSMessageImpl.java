@@ -10,7 +10,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import br.com.jerimum.fw.jms.JMSReplyMode;
 import br.com.jerimum.fw.jms.impl.AbstractJMSMessageImpl;
+import br.com.jerimum.fw.jms.pool.JMSPooledConnectionFactory;
 import ${package}.jms.HelloWorldJMSMessage;
 
 /**
@@ -26,6 +28,10 @@ public class HelloWorldJMSMessageImpl extends AbstractJMSMessageImpl implements
     @Qualifier("jmsConnectionFactory")
     private ConnectionFactory jmsConnectionFactory;
 
+    @Autowired
+    @Qualifier("jmsPooledConnectionFactory")
+    private JMSPooledConnectionFactory jmsPooledConnectionFactory;
+
     @Autowired
     @Qualifier("requestQueue")
     private Queue requestQueue;
@@ -38,6 +44,10 @@ public class HelloWorldJMSMessageImpl extends AbstractJMSMessageImpl implements
     @Qualifier("jmsTimeout")
     private Long timeout;
 
+    @Autowired
+    @Qualifier("jmsReplyMode")
+    private JMSReplyMode replyMode;
+
     @Override
     public Queue getRequestQueue() {
         return requestQueue;
@@ -53,9 +63,19 @@ public class HelloWorldJMSMessageImpl extends AbstractJMSMessageImpl implements
         return jmsConnectionFactory;
     }
 
+    @Override
+    public JMSPooledConnectionFactory getPooledConnectionFactory() {
+        return jmsPooledConnectionFactory;
+    }
+
     @Override
     public long getTimeout() {
         return timeout;
     }
 
+    @Override
+    public JMSReplyMode getReplyMode() {
+        return replyMode;
+    }
+
 }
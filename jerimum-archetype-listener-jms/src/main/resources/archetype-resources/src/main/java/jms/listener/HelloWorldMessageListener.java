@@ -3,7 +3,10 @@
 #set($symbol_escape='\')
 package ${package}.jms.listener;
 
-import javax.jms.BytesMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
@@ -12,41 +15,37 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import br.com.jerimum.fw.logging.LoggerUtils;import ${package}.service.HelloWorldService;
+import br.com.jerimum.fw.jms.JMSMessageBodyReader;
+import br.com.jerimum.fw.jms.claimcheck.JMSClaimCheck;
+import br.com.jerimum.fw.jms.listener.JerimumBatchMessageListener;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import ${package}.service.HelloWorldService;
 
 /**
- * Sample Hello World message listener.
+ * Sample Hello World message listener. Receives the messages one by one or in batches when used
+ * with a {@link br.com.jerimum.fw.jms.listener.JMSBatchMessageListenerContainer}.
  * 
  * @author https://github.com/dalifreire/jerimum
  * @since 11/2015
  */
 @Component
-public class HelloWorldMessageListener implements MessageListener {
+public class HelloWorldMessageListener implements MessageListener, JerimumBatchMessageListener {
 
     @Autowired
     private HelloWorldService helloWorldService;
 
+    private final JMSMessageBodyReader bodyReader = new JMSMessageBodyReader();
+
     @Override
     public void onMessage(Message message) {
 
         try {
 
-            String messageID = StringUtils.removeStartIgnoreCase(message.getJMSMessageID(), "ID:");
-            String correlationID = StringUtils.removeStartIgnoreCase(message.getJMSCorrelationID(), "ID:");
-            LoggerUtils.logDebug(this.getClass(), "New message received. MessageID: '{}', CorrelationID: '{}'",
-                messageID, correlationID);
-
-            String messageStr = null;
-            if (message instanceof BytesMessage) {
+            String messageStr = getText(message);
 
-                BytesMessage bytesMessage = (BytesMessage) message;
-                byte[] body = new byte[(int) bytesMessage.getBodyLength()];
-                bytesMessage.readBytes(body);
-                messageStr = new String(body);
-
-            } else {
-                TextMessage textMessage = (TextMessage) message;
-                messageStr = textMessage.getText();
+            // ANSWERING THE REQUESTER
+            if (message.getJMSReplyTo() != null) {
+                helloWorldService.reply(message, "Hello! I'm here.");
             }
 
             // SENDING A MESSAGE
@@ -59,8 +58,44 @@ public class HelloWorldMessageListener implements MessageListener {
             LoggerUtils.logDebug(this.getClass(), "Received response: '{}'", response);
 
         } catch (Exception e) {
-            LoggerUtils.logError(this.getClass(), "Unable to get jms message.", e);
+            // THE FAILED MESSAGE IS RESCHEDULED BY THE JMSRetryMessageListener
+            throw new IllegalStateException("Unable to process jms message.", e);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        LoggerUtils.logDebug(this.getClass(), "{} messages received.", messages.size());
+
+        List<String> messagesStr = new ArrayList<String>(messages.size());
+        for (Message message : messages) {
+
+            messagesStr.add(getText(message));
+
+            // ANSWERING THE REQUESTER
+            if (message.getJMSReplyTo() != null) {
+                helloWorldService.reply(message, "Hello! I'm here.");
+            }
+        }
+
+        // SENDING ALL THE MESSAGES AT ONCE
+        helloWorldService.propagateReceivedMessages(messagesStr);
+    }
+
+    private String getText(Message message) throws JMSException {
+
+        String messageID = StringUtils.removeStartIgnoreCase(message.getJMSMessageID(), "ID:");
+        String correlationID = StringUtils.removeStartIgnoreCase(message.getJMSCorrelationID(), "ID:");
+        LoggerUtils.logDebug(this.getClass(), "New message received. MessageID: '{}', CorrelationID: '{}'",
+            messageID, correlationID);
+
+        // TEXT AND BYTES MESSAGES, DECODED WITH THE CHARSET OF THE MESSAGE (UTF-8 BY DEFAULT). THE CLAIM-CHECKED
+        // TEXTS ARE ALREADY RESOLVED BY THE JMSClaimCheckMessageListener
+        if (JMSClaimCheck.isClaimCheck(message) && ((TextMessage) message).getText() == null) {
+            throw new IllegalStateException("Claim-checked message not resolved: " + messageID);
         }
+        return bodyReader.readText(message);
     }
 
 }
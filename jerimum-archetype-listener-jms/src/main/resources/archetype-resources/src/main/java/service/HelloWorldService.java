@@ -3,6 +3,10 @@
 #set($symbol_escape='\')
 package ${package}.service;
 
+import java.util.List;
+
+import javax.jms.Message;
+
 import br.com.jerimum.fw.exception.ServiceException;
 
 /**
@@ -21,6 +25,14 @@ public interface HelloWorldService {
      */
     public void propagateReceivedMessage(String msg) throws ServiceException;
 
+    /**
+     * Post all the text messages into request queue in a single batch.
+     * 
+     * @param msgs Messages to be sent
+     * @throws ServiceException
+     */
+    public void propagateReceivedMessages(List<String> msgs) throws ServiceException;
+
     /**
      * Send a message and get the response (wait until timeout).
      * 
@@ -29,5 +41,14 @@ public interface HelloWorldService {
      */
     public String sendAndReceive(String msg) throws ServiceException;
 
+    /**
+     * Send the response of the request message to its JMSReplyTo queue.
+     * 
+     * @param request Message received
+     * @param msg Response to be sent
+     * @throws ServiceException
+     */
+    public void reply(Message request, String msg) throws ServiceException;
+
 }
 
@@ -3,11 +3,19 @@
 #set($symbol_escape='\')
 package ${package}.service.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import br.com.jerimum.fw.exception.MessageException;
 import br.com.jerimum.fw.exception.ServiceException;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
 import ${package}.jms.HelloWorldJMSMessage;
 import ${package}.service.HelloWorldService;
 
@@ -35,6 +43,27 @@ public class HelloWorldServiceImpl implements HelloWorldService {
         }
     }
 
+    @Override
+    public void propagateReceivedMessages(List<String> msgs) throws ServiceException {
+
+        try {
+
+            List<JMSMessageCreator<?>> messageCreators = new ArrayList<JMSMessageCreator<?>>(msgs.size());
+            for (final String msg : msgs) {
+                messageCreators.add(new JMSMessageCreator<TextMessage>() {
+                    @Override
+                    public void setParams(TextMessage message) throws JMSException {
+                        message.setText(msg);
+                    }
+                });
+            }
+            helloWorldMessage.sendBatch(messageCreators, helloWorldMessage.getWriteQueue());
+
+        } catch (MessageException e) {
+            throw new ServiceException("Unable to send messages!", e);
+        }
+    }
+
     @Override
     public String sendAndReceive(String msg) throws ServiceException {
 
@@ -47,4 +76,21 @@ public class HelloWorldServiceImpl implements HelloWorldService {
         }
     }
 
+    @Override
+    public void reply(Message request, final String msg) throws ServiceException {
+
+        try {
+
+            helloWorldMessage.sendReply(request, new JMSMessageCreator<TextMessage>() {
+                @Override
+                public void setParams(TextMessage message) throws JMSException {
+                    message.setText(msg);
+                }
+            });
+
+        } catch (MessageException e) {
+            throw new ServiceException("Unable to send reply message!", e);
+        }
+    }
+
 }
@@ -0,0 +1,55 @@
+package br.com.jerimum.benchmark.jms;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Queue;
+
+import br.com.jerimum.fw.jms.impl.AbstractJMSMessageImpl;
+
+/**
+ * JMS gateway measured by the benchmark, bound to the queues of the embedded broker.
+ *
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class BenchmarkJMSMessageImpl extends AbstractJMSMessageImpl {
+
+    private final ConnectionFactory connectionFactory;
+    private final Queue writeQueue;
+    private final Queue readQueue;
+    private final long timeout;
+
+    /**
+     * @param connectionFactory
+     * @param writeQueue >> Queue of the requests.
+     * @param readQueue >> Queue of the responses.
+     * @param timeout >> Time (ms) waiting for each response.
+     */
+    public BenchmarkJMSMessageImpl(ConnectionFactory connectionFactory, Queue writeQueue, Queue readQueue,
+        long timeout) {
+
+        this.connectionFactory = connectionFactory;
+        this.writeQueue = writeQueue;
+        this.readQueue = readQueue;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Queue getWriteQueue() {
+        return this.writeQueue;
+    }
+
+    @Override
+    public Queue getReadQueue() {
+        return this.readQueue;
+    }
+
+    @Override
+    public ConnectionFactory getConnectionFactory() {
+        return this.connectionFactory;
+    }
+
+    @Override
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+}
@@ -0,0 +1,50 @@
+package br.com.jerimum.benchmark.jms;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.springframework.jms.listener.SessionAwareMessageListener;
+
+import lombok.Getter;
+
+/**
+ * Responder of the request/reply benchmark. Each text request is answered with the same text,
+ * correlated by the <i>JMSMessageID</i> of the request, on its <i>JMSReplyTo</i> or on the
+ * <i>replyQueue</i> when the request has none.
+ * <p>
+ * The reply is sent on the session of the listener container, so the responder adds no
+ * connection or session of its own to the measured path.
+ *
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class EchoMessageListener implements SessionAwareMessageListener<Message> {
+
+    @Getter
+    private final Queue replyQueue;
+
+    public EchoMessageListener(Queue replyQueue) {
+        this.replyQueue = replyQueue;
+    }
+
+    @Override
+    public void onMessage(Message message, Session session) throws JMSException {
+
+        String text = message instanceof TextMessage ? ((TextMessage) message).getText() : null;
+        TextMessage reply = session.createTextMessage(text);
+        reply.setJMSCorrelationID(message.getJMSMessageID());
+
+        Destination destination = message.getJMSReplyTo() != null ? message.getJMSReplyTo() : this.replyQueue;
+        MessageProducer producer = session.createProducer(destination);
+        try {
+            producer.send(reply, message.getJMSDeliveryMode(), message.getJMSPriority(), 0);
+        } finally {
+            producer.close();
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package br.com.jerimum.benchmark.jms;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * In-memory ActiveMQ broker started inside the JVM. The clients connect through the
+ * <i>vm://</i> transport, so the messages never leave the process and no network or disk I/O is
+ * measured together with the gateway.
+ *
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class EmbeddedBroker implements InitializingBean, DisposableBean {
+
+    public static final String DEFAULT_BROKER_NAME = "jerimum-benchmark";
+
+    @Getter
+    private final String brokerName;
+
+    /**
+     * Number of messages prefetched by each consumer.
+     */
+    @Getter
+    @Setter
+    private int prefetchSize = 1000;
+
+    private BrokerService brokerService;
+
+    public EmbeddedBroker() {
+        this(DEFAULT_BROKER_NAME);
+    }
+
+    public EmbeddedBroker(String brokerName) {
+        this.brokerName = brokerName;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        start();
+    }
+
+    /**
+     * Starts the broker without persistence, JMX and advisory messages.
+     *
+     * @throws Exception
+     */
+    public synchronized void start() throws Exception {
+
+        if (this.brokerService != null) {
+            return;
+        }
+
+        BrokerService broker = new BrokerService();
+        broker.setBrokerName(this.brokerName);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setAdvisorySupport(false);
+        broker.setUseShutdownHook(false);
+        broker.start();
+        broker.waitUntilStarted();
+        this.brokerService = broker;
+
+        LoggerUtils.logInfo(EmbeddedBroker.class, "Embedded broker {} started.", this.brokerName);
+    }
+
+    /**
+     * Creates a connection factory of the broker. The factory does not create the broker, so the
+     * broker must be started before the first connection.
+     *
+     * @return {@link ActiveMQConnectionFactory}
+     */
+    public ActiveMQConnectionFactory createConnectionFactory() {
+
+        ActiveMQConnectionFactory connectionFactory =
+            new ActiveMQConnectionFactory("vm://" + this.brokerName + "?create=false");
+        connectionFactory.setWatchTopicAdvisories(false);
+        connectionFactory.getPrefetchPolicy().setAll(this.prefetchSize);
+        return connectionFactory;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        stop();
+    }
+
+    /**
+     * Stops the broker, discarding the pending messages.
+     *
+     * @throws Exception
+     */
+    public synchronized void stop() throws Exception {
+
+        if (this.brokerService == null) {
+            return;
+        }
+
+        this.brokerService.stop();
+        this.brokerService.waitUntilStopped();
+        this.brokerService = null;
+
+        LoggerUtils.logInfo(EmbeddedBroker.class, "Embedded broker {} stopped.", this.brokerName);
+    }
+
+}
@@ -0,0 +1,67 @@
+package br.com.jerimum.benchmark.jms;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import br.com.jerimum.fw.jms.metrics.JMSHistogram;
+import lombok.Getter;
+
+/**
+ * Throughput and latencies (ns) of one operation of the gateway measured at one concurrency.
+ *
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSBenchmarkResult {
+
+    public static final String HEADER = String.format(Locale.ROOT, "%-24s %7s %9s %12s %10s %10s %10s %10s",
+        "operation", "threads", "messages", "msgs/s", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)");
+
+    @Getter
+    private final String operation;
+    @Getter
+    private final int concurrency;
+    @Getter
+    private final long messageCount;
+    @Getter
+    private final long elapsedTime;
+    @Getter
+    private final JMSHistogram latencies;
+
+    /**
+     * @param operation
+     * @param concurrency >> Number of threads calling the gateway.
+     * @param messageCount >> Number of messages sent or received.
+     * @param elapsedTime >> Time (ns) from the first call to the last completed call.
+     * @param latencies >> Latency (ns) of each call.
+     */
+    public JMSBenchmarkResult(String operation, int concurrency, long messageCount, long elapsedTime,
+        JMSHistogram latencies) {
+
+        this.operation = operation;
+        this.concurrency = concurrency;
+        this.messageCount = messageCount;
+        this.elapsedTime = elapsedTime;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Messages per second.
+     *
+     * @return double
+     */
+    public double getThroughput() {
+        return this.elapsedTime > 0 ? this.messageCount * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedTime
+            : 0;
+    }
+
+    /**
+     * Line of the report under {@link #HEADER}.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-24s %7d %9d %12.0f %10.1f %10.1f %10.1f %10.1f", this.operation,
+            this.concurrency, this.messageCount, getThroughput(), this.latencies.getMean() / 1000d,
+            this.latencies.getP50() / 1000d, this.latencies.getP99() / 1000d, this.latencies.getP999() / 1000d);
+    }
+
+}
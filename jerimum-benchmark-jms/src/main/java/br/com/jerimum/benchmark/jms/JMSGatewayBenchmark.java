@@ -0,0 +1,362 @@
+package br.com.jerimum.benchmark.jms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Queue;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSReplyMode;
+import br.com.jerimum.fw.jms.metrics.JMSHistogram;
+import br.com.jerimum.fw.jms.pool.JMSPooledConnectionFactory;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Throughput and latency benchmark of the JMS gateway. The gateway runs against an
+ * {@link EmbeddedBroker}, with an {@link EchoMessageListener} answering the requests, and each
+ * operation is called by 1, 4 and 16 threads:
+ * <ul>
+ * <li><b>sendTextMessage</b>: one text message per call, sent to the sink queue;</li>
+ * <li><b>receiveMultipleMessages</b>: drains the messages left in the sink queue, up to
+ * <i>receiveBatchSize</i> messages per call;</li>
+ * <li><b>sendAndReceive</b>: one request per call, waiting for the echo reply.</li>
+ * </ul>
+ * Before the measurements every operation runs <i>warmupCount</i> times on one thread and the
+ * results are discarded.
+ * <p>
+ * The settings of {@link #main(String[])} are read from the system properties
+ * <i>jerimum.benchmark.concurrency</i> (comma separated), <i>jerimum.benchmark.operations</i>,
+ * <i>jerimum.benchmark.warmup</i>, <i>jerimum.benchmark.payloadSize</i>,
+ * <i>jerimum.benchmark.receiveBatchSize</i> and <i>jerimum.benchmark.replyMode</i>.
+ *
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSGatewayBenchmark {
+
+    public static final String SEND_TEXT_MESSAGE = "sendTextMessage";
+    public static final String RECEIVE_MULTIPLE_MESSAGES = "receiveMultipleMessages";
+    public static final String SEND_AND_RECEIVE = "sendAndReceive";
+
+    public static final String REQUEST_QUEUE = "jerimum.benchmark.request";
+    public static final String REPLY_QUEUE = "jerimum.benchmark.reply";
+    public static final String SINK_QUEUE = "jerimum.benchmark.sink";
+
+    public static final int[] DEFAULT_CONCURRENCY_LEVELS = { 1, 4, 16 };
+    public static final int DEFAULT_OPERATION_COUNT = 10000;
+    public static final int DEFAULT_WARMUP_COUNT = 2000;
+    public static final int DEFAULT_PAYLOAD_SIZE = 256;
+    public static final int DEFAULT_RECEIVE_BATCH_SIZE = 100;
+    public static final long DEFAULT_TIMEOUT = 5000L;
+
+    /**
+     * Numbers of threads calling the gateway, one measurement of each operation per level.
+     */
+    @Getter
+    @Setter
+    private int[] concurrencyLevels = DEFAULT_CONCURRENCY_LEVELS;
+
+    /**
+     * Number of messages sent, received or requested by each measurement.
+     */
+    @Getter
+    @Setter
+    private int operationCount = DEFAULT_OPERATION_COUNT;
+    @Getter
+    @Setter
+    private int warmupCount = DEFAULT_WARMUP_COUNT;
+
+    /**
+     * Number of characters of each text message.
+     */
+    @Getter
+    @Setter
+    private int payloadSize = DEFAULT_PAYLOAD_SIZE;
+    @Getter
+    @Setter
+    private int receiveBatchSize = DEFAULT_RECEIVE_BATCH_SIZE;
+
+    /**
+     * Time (ms) waiting for each reply and for each batch of received messages.
+     */
+    @Getter
+    @Setter
+    private long timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Number of consumers of the {@link EchoMessageListener}.
+     */
+    @Getter
+    @Setter
+    private int responderConcurrency = 4;
+    @Getter
+    @Setter
+    private JMSReplyMode replyMode = JMSReplyMode.SELECTOR;
+
+    public static void main(String[] args) throws Exception {
+
+        JMSGatewayBenchmark benchmark = new JMSGatewayBenchmark();
+        benchmark.setConcurrencyLevels(parseConcurrencyLevels(
+            System.getProperty("jerimum.benchmark.concurrency"), DEFAULT_CONCURRENCY_LEVELS));
+        benchmark.setOperationCount(Integer.getInteger("jerimum.benchmark.operations", DEFAULT_OPERATION_COUNT));
+        benchmark.setWarmupCount(Integer.getInteger("jerimum.benchmark.warmup", DEFAULT_WARMUP_COUNT));
+        benchmark.setPayloadSize(Integer.getInteger("jerimum.benchmark.payloadSize", DEFAULT_PAYLOAD_SIZE));
+        benchmark.setReceiveBatchSize(
+            Integer.getInteger("jerimum.benchmark.receiveBatchSize", DEFAULT_RECEIVE_BATCH_SIZE));
+        benchmark.setReplyMode(
+            JMSReplyMode.valueOf(System.getProperty("jerimum.benchmark.replyMode", JMSReplyMode.SELECTOR.name())));
+
+        List<JMSBenchmarkResult> results = benchmark.run();
+
+        LoggerUtils.logInfo(JMSGatewayBenchmark.class, "Payload: {} chars, reply mode: {}",
+            benchmark.getPayloadSize(), benchmark.getReplyMode());
+        LoggerUtils.logInfo(JMSGatewayBenchmark.class, JMSBenchmarkResult.HEADER);
+        for (JMSBenchmarkResult result : results) {
+            LoggerUtils.logInfo(JMSGatewayBenchmark.class, result.toString());
+        }
+    }
+
+    /**
+     * Starts the broker, the gateway and the responder, measures every operation at every
+     * concurrency level and stops everything.
+     *
+     * @return {@link List}<{@link JMSBenchmarkResult}> in the order of the measurements.
+     * @throws Exception
+     */
+    public List<JMSBenchmarkResult> run() throws Exception {
+
+        EmbeddedBroker broker = new EmbeddedBroker();
+        broker.start();
+
+        ActiveMQConnectionFactory connectionFactory = broker.createConnectionFactory();
+        JMSPooledConnectionFactory pooledConnectionFactory = new JMSPooledConnectionFactory(connectionFactory);
+        pooledConnectionFactory.setSessionCacheSize(getMaxConcurrency());
+
+        Queue requestQueue = new ActiveMQQueue(REQUEST_QUEUE);
+        Queue replyQueue = new ActiveMQQueue(REPLY_QUEUE);
+        // each receive opens a new consumer: its prefetch must not hold the messages of the others
+        Queue sinkQueue = new ActiveMQQueue(SINK_QUEUE + "?consumer.prefetchSize=" + this.receiveBatchSize);
+
+        BenchmarkJMSMessageImpl gateway =
+            new BenchmarkJMSMessageImpl(connectionFactory, requestQueue, replyQueue, this.timeout);
+        gateway.setPooledConnectionFactory(pooledConnectionFactory);
+        gateway.setReplyMode(this.replyMode);
+        gateway.afterPropertiesSet();
+
+        BenchmarkJMSMessageImpl sinkGateway =
+            new BenchmarkJMSMessageImpl(connectionFactory, sinkQueue, sinkQueue, this.timeout);
+        sinkGateway.setPooledConnectionFactory(pooledConnectionFactory);
+        sinkGateway.afterPropertiesSet();
+
+        DefaultMessageListenerContainer responder = new DefaultMessageListenerContainer();
+        responder.setConnectionFactory(connectionFactory);
+        responder.setDestination(requestQueue);
+        responder.setConcurrentConsumers(this.responderConcurrency);
+        responder.setMessageListener(new EchoMessageListener(replyQueue));
+        responder.afterPropertiesSet();
+        responder.start();
+
+        try {
+
+            String payload = Strings.repeat("x", this.payloadSize);
+            LoggerUtils.logInfo(JMSGatewayBenchmark.class, "Warming up with {} messages...", this.warmupCount);
+            measure(gateway, sinkGateway, payload, 1, this.warmupCount);
+
+            List<JMSBenchmarkResult> results = new ArrayList<JMSBenchmarkResult>();
+            for (int concurrency : this.concurrencyLevels) {
+                LoggerUtils.logInfo(JMSGatewayBenchmark.class, "Measuring with {} threads...", concurrency);
+                results.addAll(measure(gateway, sinkGateway, payload, concurrency, this.operationCount));
+            }
+            return results;
+
+        } finally {
+            responder.shutdown();
+            sinkGateway.destroy();
+            gateway.destroy();
+            pooledConnectionFactory.destroy();
+            broker.stop();
+        }
+    }
+
+    private List<JMSBenchmarkResult> measure(final BenchmarkJMSMessageImpl gateway,
+        final BenchmarkJMSMessageImpl sinkGateway, final String payload, int concurrency, int count)
+        throws Exception {
+
+        List<JMSBenchmarkResult> results = new ArrayList<JMSBenchmarkResult>();
+
+        results.add(measure(SEND_TEXT_MESSAGE, concurrency, new RepeatedOperation(count) {
+            @Override
+            void call() throws Exception {
+                sinkGateway.sendTextMessage(payload);
+            }
+        }));
+
+        final AtomicLong pending = new AtomicLong(count);
+        results.add(measure(RECEIVE_MULTIPLE_MESSAGES, concurrency, new Operation() {
+            @Override
+            int execute() throws Exception {
+                int claimed = claim(pending, JMSGatewayBenchmark.this.receiveBatchSize);
+                if (claimed == 0) {
+                    return 0;
+                }
+                int received = sinkGateway.receiveMultipleMessages("", claimed, JMSGatewayBenchmark.this.timeout)
+                    .size();
+                if (received < claimed) {
+                    throw new MessageException("Received " + received + " of " + claimed + " messages!");
+                }
+                return received;
+            }
+        }));
+
+        results.add(measure(SEND_AND_RECEIVE, concurrency, new RepeatedOperation(count) {
+            @Override
+            void call() throws Exception {
+                if (gateway.sendAndReceive(payload) == null) {
+                    throw new MessageException("Reply not received in " + JMSGatewayBenchmark.this.timeout + "ms!");
+                }
+            }
+        }));
+
+        return results;
+    }
+
+    /**
+     * Calls the operation from <i>concurrency</i> threads until it has nothing left to do.
+     */
+    private static JMSBenchmarkResult measure(String name, int concurrency, final Operation operation)
+        throws Exception {
+
+        final JMSHistogram latencies = new JMSHistogram();
+        final AtomicLong messageCount = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-benchmark-%d").build());
+        try {
+
+            List<Future<Void>> workers = new ArrayList<Future<Void>>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        while (true) {
+                            long started = System.nanoTime();
+                            int count = operation.execute();
+                            if (count == 0) {
+                                return null;
+                            }
+                            latencies.record(System.nanoTime() - started);
+                            messageCount.addAndGet(count);
+                        }
+                    }
+                }));
+            }
+
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+            long elapsedTime = System.nanoTime() - started;
+
+            return new JMSBenchmarkResult(name, concurrency, messageCount.get(), elapsedTime, latencies);
+
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes up to <i>max</i> of the pending messages.
+     */
+    private static int claim(AtomicLong pending, int max) {
+
+        while (true) {
+            long current = pending.get();
+            int claimed = (int) Math.min(current, max);
+            if (claimed == 0 || pending.compareAndSet(current, current - claimed)) {
+                return claimed;
+            }
+        }
+    }
+
+    private int getMaxConcurrency() {
+
+        int max = 1;
+        for (int concurrency : this.concurrencyLevels) {
+            max = Math.max(max, concurrency);
+        }
+        return max;
+    }
+
+    private static int[] parseConcurrencyLevels(String value, int[] defaultValue) {
+
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+
+        String[] levels = value.split(",");
+        int[] concurrencyLevels = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            concurrencyLevels[i] = Integer.parseInt(levels[i].trim());
+        }
+        return concurrencyLevels;
+    }
+
+    /**
+     * One call to the gateway.
+     */
+    private abstract static class Operation {
+
+        /**
+         * @return number of messages sent or received, <code>0</code> when there is nothing left
+         *         to do.
+         * @throws Exception
+         */
+        abstract int execute() throws Exception;
+    }
+
+    /**
+     * Operation called a fixed number of times, one message per call.
+     */
+    private abstract static class RepeatedOperation extends Operation {
+
+        private final AtomicInteger remaining;
+
+        RepeatedOperation(int count) {
+            this.remaining = new AtomicInteger(count);
+        }
+
+        @Override
+        int execute() throws Exception {
+
+            if (this.remaining.getAndDecrement() <= 0) {
+                return 0;
+            }
+            call();
+            return 1;
+        }
+
+        abstract void call() throws Exception;
+    }
+
+}
@@ -0,0 +1,34 @@
+package br.com.jerimum.fw.exception;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Message;
+
+import lombok.Getter;
+
+/**
+ * Exception thrown when a jms batch operation is interrupted. The messages already committed are
+ * kept in <i>sentMessages</i>; every message from <i>firstUnsentIndex</i> on was not delivered.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class MessageBatchException extends MessageException {
+
+    private static final long serialVersionUID = -6143785287914226307L;
+
+    @Getter
+    private final transient List<Message> sentMessages;
+    @Getter
+    private final int firstUnsentIndex;
+    @Getter
+    private final int failedIndex;
+
+    public MessageBatchException(String message, Throwable cause, List<Message> sentMessages, int failedIndex) {
+        super(message, cause);
+        this.sentMessages = new ArrayList<Message>(sentMessages);
+        this.firstUnsentIndex = sentMessages.size();
+        this.failedIndex = failedIndex;
+    }
+
+}
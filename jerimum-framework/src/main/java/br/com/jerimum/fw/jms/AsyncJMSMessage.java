@@ -0,0 +1,85 @@
+package br.com.jerimum.fw.jms;
+
+import java.util.List;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import br.com.jerimum.fw.exception.MessageException;
+
+/**
+ * Gateway used for asynchronous JMS request/reply. The returned futures complete when the
+ * correlated response arrives or fail with a {@link java.util.concurrent.TimeoutException} after
+ * {@link #getTimeout()} milliseconds, so the caller thread is never blocked waiting for a reply.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public interface AsyncJMSMessage extends JMSMessage {
+
+    /**
+     * Puts a new message into the queue. When the linger mode is enabled the returned future
+     * completes once the batch that contains the message is committed.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @return {@link ListenableFuture}<Message>
+     */
+    ListenableFuture<Message> sendMessageAsync(JMSMessageCreator<?> messageCreator, Queue queue);
+
+    /**
+     * Puts a new message into the write queue and returns the future text of the response.
+     * 
+     * @param message
+     * @return {@link ListenableFuture}<String>
+     */
+    ListenableFuture<String> sendAndReceiveAsync(String message);
+
+    /**
+     * Puts a new message into the write queue and returns the future response.
+     * 
+     * @param messageCreator
+     * @return {@link ListenableFuture}<Message>
+     */
+    ListenableFuture<Message> sendAndReceiveAsync(JMSMessageCreator<?> messageCreator);
+
+    /**
+     * Puts a new message into the queue and returns the future response.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @return {@link ListenableFuture}<Message>
+     */
+    ListenableFuture<Message> sendAndReceiveAsync(JMSMessageCreator<?> messageCreator, Queue queue);
+
+    /**
+     * Puts the message into all the queues at once and collects the correlated responses as they
+     * arrive. The future completes when all the queues answered, when <i>quorum</i> queues
+     * answered or can no longer answer, or after <i>timeout</i> milliseconds, whichever comes
+     * first.
+     * 
+     * @param messageCreator
+     * @param queues >> Distinct queues the message is sent to.
+     * @param quorum >> Number of responses needed, or 0 to wait for all of them.
+     * @param timeout >> Overall time (ms) to wait for the responses.
+     * @return {@link ListenableFuture}<JMSScatterGatherResult>
+     */
+    ListenableFuture<JMSScatterGatherResult> scatterGatherAsync(JMSMessageCreator<?> messageCreator,
+        List<Queue> queues, int quorum, long timeout);
+
+    /**
+     * Puts the message into all the queues at once and waits for the responses.
+     * 
+     * @param messageCreator
+     * @param queues >> Distinct queues the message is sent to.
+     * @param quorum >> Number of responses needed, or 0 to wait for all of them.
+     * @param timeout >> Overall time (ms) to wait for the responses.
+     * @return {@link JMSScatterGatherResult}
+     * @throws MessageException
+     * @see #scatterGatherAsync(JMSMessageCreator, List, int, long)
+     */
+    JMSScatterGatherResult scatterGather(JMSMessageCreator<?> messageCreator, List<Queue> queues, int quorum,
+        long timeout) throws MessageException;
+
+}
@@ -0,0 +1,42 @@
+package br.com.jerimum.fw.jms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Writes straight into the body of a {@link BytesMessage}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSBytesMessageOutputStream extends OutputStream {
+
+    private final BytesMessage message;
+
+    JMSBytesMessageOutputStream(BytesMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        try {
+            this.message.writeByte((byte) b);
+        } catch (JMSException e) {
+            throw new IOException("Unable to write message body!", e);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+
+        try {
+            this.message.writeBytes(bytes, offset, length);
+        } catch (JMSException e) {
+            throw new IOException("Unable to write message body!", e);
+        }
+    }
+
+}
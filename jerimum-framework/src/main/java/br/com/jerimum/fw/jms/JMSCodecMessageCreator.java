@@ -0,0 +1,44 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Creates the message of a payload through its {@link JMSMessageCodec}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ * @param <P>
+ */
+class JMSCodecMessageCreator<P> extends JMSMessageCreator<Message> {
+
+    private final JMSMessageCodec<P> codec;
+    private final P payload;
+
+    JMSCodecMessageCreator(JMSMessageCodec<P> codec, P payload) {
+        this.codec = codec;
+        this.payload = payload;
+    }
+
+    /**
+     * The codec chooses the message type and writes the body.
+     */
+    @Override
+    protected Message newMessage(Session session) throws JMSException {
+        return this.codec.encode(session, this.payload);
+    }
+
+    /**
+     * Nothing to set: the body was written by the codec.
+     */
+    @Override
+    public void setParams(Message message) throws JMSException {
+
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " - payload: " + this.payload.getClass().getName();
+    }
+
+}
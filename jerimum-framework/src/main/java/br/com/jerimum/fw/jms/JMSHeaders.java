@@ -0,0 +1,74 @@
+package br.com.jerimum.fw.jms;
+
+/**
+ * Names of the message properties used by the framework.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSHeaders {
+
+    /**
+     * Time (ms since epoch) after which nobody is waiting for the processing of the request.
+     */
+    public static final String DEADLINE = "JerimumDeadline";
+
+    /**
+     * Number of times the message was already processed without success.
+     */
+    public static final String RETRY_ATTEMPTS = "JerimumRetryAttempts";
+
+    /**
+     * <i>JMSMessageID</i> of the first delivery of a message re-sent by the framework.
+     */
+    public static final String ORIGINAL_MESSAGE_ID = "JerimumOriginalMessageID";
+
+    /**
+     * Destination the message was consumed from before being re-sent by the framework.
+     */
+    public static final String ORIGINAL_DESTINATION = "JerimumOriginalDestination";
+
+    /**
+     * Class of the exception that made the message be dead-lettered.
+     */
+    public static final String FAILURE_EXCEPTION = "JerimumFailureException";
+
+    /**
+     * Message of the exception that made the message be dead-lettered.
+     */
+    public static final String FAILURE_MESSAGE = "JerimumFailureMessage";
+
+    /**
+     * Time (ms since epoch) the message was dead-lettered.
+     */
+    public static final String FAILURE_TIMESTAMP = "JerimumFailureTimestamp";
+
+    /**
+     * Queue whose cached responses are invalidated by the message.
+     */
+    public static final String CACHE_QUEUE = "JerimumCacheQueue";
+
+    /**
+     * Reference of the payload offloaded to the blob store of the claim-check.
+     */
+    public static final String CLAIM_CHECK = "JerimumClaimCheck";
+
+    /**
+     * Compression codec of the message body.
+     */
+    public static final String CODEC = "JerimumCodec";
+
+    /**
+     * Length (bytes) of the message body before the compression.
+     */
+    public static final String UNCOMPRESSED_LENGTH = "JerimumUncompressedLength";
+
+    /**
+     * Charset of the bytes of the message body.
+     */
+    public static final String CHARSET = "JerimumCharset";
+
+    private JMSHeaders() {
+
+    }
+
+}
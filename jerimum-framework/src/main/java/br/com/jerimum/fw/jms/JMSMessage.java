@@ -1,5 +1,7 @@
 package br.com.jerimum.fw.jms;
 
+import java.util.List;
+
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
 import javax.jms.Queue;
@@ -62,6 +64,52 @@ public interface JMSMessage {
      */
     Message sendMessage(JMSMessageCreator<?> messageCreator, Queue queue) throws MessageException;
 
+    /**
+     * Puts a new message into the queue with the priority, persistence and time to live of the
+     * QoS profile.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @param qosProfile >> When <code>null</code> the QoS of the gateway is used.
+     * @return {@link Message}
+     * @throws MessageException
+     */
+    Message sendMessage(JMSMessageCreator<?> messageCreator, Queue queue, JMSQoSProfile qosProfile)
+        throws MessageException;
+
+    /**
+     * Puts the payload into the write queue, converted by the codec of its type.
+     * 
+     * @param payload
+     * @return {@link Message}
+     * @throws MessageException
+     * @see JMSMessageCodecRegistry
+     */
+    Message sendObject(Object payload) throws MessageException;
+
+    /**
+     * Puts the payload into the queue, converted by the codec of its type.
+     * 
+     * @param payload
+     * @param queue
+     * @return {@link Message}
+     * @throws MessageException
+     * @see JMSMessageCodecRegistry
+     */
+    Message sendObject(Object payload, Queue queue) throws MessageException;
+
+    /**
+     * Puts all the messages into the queue using a single transacted session, committing every
+     * <i>batchCommitSize</i> messages.
+     * 
+     * @param messageCreators
+     * @param queue
+     * @return {@link List}<Message> >> The messages sent.
+     * @throws MessageException {@link br.com.jerimum.fw.exception.MessageBatchException} when
+     *             the batch is interrupted, with the messages already committed.
+     */
+    List<Message> sendBatch(List<JMSMessageCreator<?>> messageCreators, Queue queue) throws MessageException;
+
     /**
      * Puts a new message into the write queue and waits a response from the read queue.
      * 
@@ -80,6 +128,18 @@ public interface JMSMessage {
      */
     String sendAndReceive(JMSMessageCreator<TextMessage> messageCreator) throws MessageException;
 
+    /**
+     * Puts the request into the write queue and waits a response from the read queue, both
+     * converted by the codecs of their types.
+     * 
+     * @param request
+     * @param responseType
+     * @return T >> The response or <code>null</code> if none arrived within the timeout.
+     * @throws MessageException
+     * @see JMSMessageCodecRegistry
+     */
+    <T> T sendAndReceiveObject(Object request, Class<T> responseType) throws MessageException;
+
     /**
      * Posta a mensagem passada como parametro (de forma textual) na fila.
      * 
@@ -110,6 +170,17 @@ public interface JMSMessage {
      */
     TextMessage sendTextMessage(String msg, Queue queue) throws MessageException;
 
+    /**
+     * Sends the reply of the request message to its <i>JMSReplyTo</i> destination, using the
+     * <i>JMSMessageID</i> of the request as the <i>JMSCorrelationID</i> of the reply.
+     * 
+     * @param request
+     * @param messageCreator
+     * @return {@link Message} >> The reply sent.
+     * @throws MessageException
+     */
+    Message sendReply(Message request, JMSMessageCreator<?> messageCreator) throws MessageException;
+
     /**
      * Recupera as mensagens da fila de reponse de acordo com o messageSelector.
      * 
@@ -0,0 +1,258 @@
+package br.com.jerimum.fw.jms;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+import javax.xml.bind.JAXBException;
+
+import br.com.jerimum.fw.jms.pool.JMSBufferPool;
+import br.com.jerimum.fw.json.JSONUtils;
+import br.com.jerimum.fw.xml.JAXBUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Reads the body of {@link TextMessage}s and {@link BytesMessage}s. The bytes are decoded with the
+ * charset named in the {@link JMSHeaders#CHARSET} property of the message, or with
+ * <i>defaultCharset</i> when there is none, never with the platform charset.
+ * <p>
+ * The text of a {@link BytesMessage} is decoded through buffers taken from a
+ * {@link JMSBufferPool}, and the XML and JSON bodies are given to JAXB and Gson as a stream read
+ * straight from the message, without building an intermediate {@link String}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSMessageBodyReader {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Getter
+    private final JMSBufferPool bufferPool;
+    @Getter
+    @Setter
+    private Charset defaultCharset = UTF_8;
+
+    public JMSMessageBodyReader() {
+        this(new JMSBufferPool());
+    }
+
+    public JMSMessageBodyReader(JMSBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Returns the charset of the message body.
+     * 
+     * @param message
+     * @return {@link Charset}
+     * @throws JMSException if the charset of the message is not supported.
+     */
+    public Charset getCharset(Message message) throws JMSException {
+
+        String charsetName = message.getStringProperty(JMSHeaders.CHARSET);
+        if (charsetName == null) {
+            return this.defaultCharset;
+        }
+
+        try {
+            return Charset.forName(charsetName);
+        } catch (IllegalCharsetNameException e) {
+            throw new MessageFormatException("Unsupported message charset: " + charsetName);
+        } catch (UnsupportedCharsetException e) {
+            throw new MessageFormatException("Unsupported message charset: " + charsetName);
+        }
+    }
+
+    /**
+     * Returns the text of the message.
+     * 
+     * @param message
+     * @return {@link String}
+     * @throws JMSException
+     */
+    public String readText(Message message) throws JMSException {
+
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText();
+        }
+
+        BytesMessage bytesMessage = toBytesMessage(message);
+        bytesMessage.reset();
+        int length = getBodyLength(bytesMessage);
+        if (length == 0) {
+            return "";
+        }
+
+        CharsetDecoder decoder = getCharset(message).newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = this.bufferPool.acquire(length);
+        CharBuffer chars = this.bufferPool.acquireChars((int) Math.ceil(length * (double) decoder.maxCharsPerByte()));
+        try {
+
+            if (bytesMessage.readBytes(bytes.array(), length) != length) {
+                throw new MessageFormatException("Unexpected end of message body!");
+            }
+
+            bytes.limit(length);
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            return new String(chars.array(), 0, chars.position());
+
+        } finally {
+            this.bufferPool.release(chars);
+            this.bufferPool.release(bytes);
+        }
+    }
+
+    /**
+     * Opens the body of the message as a stream of bytes. The body of a {@link BytesMessage} is
+     * read straight from the message; the text of a {@link TextMessage} is encoded with its
+     * charset.
+     * 
+     * @param message
+     * @return {@link InputStream}
+     * @throws JMSException
+     */
+    public InputStream openStream(Message message) throws JMSException {
+
+        if (message instanceof TextMessage) {
+            String text = ((TextMessage) message).getText();
+            return new ByteArrayInputStream(text != null ? text.getBytes(getCharset(message)) : new byte[0]);
+        }
+
+        BytesMessage bytesMessage = toBytesMessage(message);
+        bytesMessage.reset();
+        return new BytesMessageInputStream(bytesMessage);
+    }
+
+    /**
+     * Opens the body of the message as a stream of characters decoded with its charset.
+     * 
+     * @param message
+     * @return {@link Reader}
+     * @throws JMSException
+     */
+    public Reader openReader(Message message) throws JMSException {
+
+        if (message instanceof TextMessage) {
+            String text = ((TextMessage) message).getText();
+            return new StringReader(text != null ? text : "");
+        }
+
+        return new InputStreamReader(openStream(message), getCharset(message));
+    }
+
+    /**
+     * Converts the XML body of the message to an object. When the message has no
+     * {@link JMSHeaders#CHARSET} property, the encoding of a {@link BytesMessage} is taken from the
+     * XML declaration.
+     * 
+     * @param message
+     * @param classe
+     * @return T
+     * @throws JMSException
+     * @throws JAXBException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readXml(Message message, Class<T> classe) throws JMSException, JAXBException {
+
+        if (message instanceof BytesMessage && !message.propertyExists(JMSHeaders.CHARSET)) {
+            return JAXBUtils.parseToObject(classe, openStream(message));
+        }
+        return (T) JAXBUtils.createUnmarshaller(classe, null).unmarshal(openReader(message));
+    }
+
+    /**
+     * Converts the JSON body of the message to an object.
+     * 
+     * @param message
+     * @param type
+     * @return T
+     * @throws JMSException
+     */
+    public <T> T readJson(Message message, Type type) throws JMSException {
+        return JSONUtils.deserialize(type, openReader(message));
+    }
+
+    private static BytesMessage toBytesMessage(Message message) throws JMSException {
+
+        if (!(message instanceof BytesMessage)) {
+            throw new MessageFormatException("Unsupported message type: " + message.getClass().getName());
+        }
+        return (BytesMessage) message;
+    }
+
+    private static int getBodyLength(BytesMessage message) throws JMSException {
+
+        long length = message.getBodyLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new MessageFormatException("Message body too large: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Reads the body of a {@link BytesMessage} straight into the buffers of the caller.
+     */
+    private static class BytesMessageInputStream extends InputStream {
+
+        private final BytesMessage message;
+        private final byte[] single = new byte[1];
+        private byte[] chunk;
+
+        BytesMessageInputStream(BytesMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            return read(this.single, 0, 1) < 0 ? -1 : this.single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+
+            if (length == 0) {
+                return 0;
+            }
+
+            try {
+
+                if (offset == 0) {
+                    return this.message.readBytes(bytes, length);
+                }
+
+                if (this.chunk == null) {
+                    this.chunk = new byte[8192];
+                }
+                int count = this.message.readBytes(this.chunk, Math.min(length, this.chunk.length));
+                if (count > 0) {
+                    System.arraycopy(this.chunk, 0, bytes, offset, count);
+                }
+                return count;
+
+            } catch (JMSException e) {
+                throw new IOException("Unable to read message body!", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Converts a payload to a message and back. See {@link JMSMessageCodecs} for the common
+ * implementations and {@link JMSMessageCodecRegistry} for the codec of each payload type.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ * @param <T>
+ */
+public interface JMSMessageCodec<T> {
+
+    /**
+     * Creates the message carrying the payload.
+     * 
+     * @param session
+     * @param payload
+     * @return {@link Message}
+     * @throws JMSException
+     */
+    Message encode(Session session, T payload) throws JMSException;
+
+    /**
+     * Reads the payload of the message.
+     * 
+     * @param message
+     * @return T
+     * @throws JMSException
+     */
+    T decode(Message message) throws JMSException;
+
+}
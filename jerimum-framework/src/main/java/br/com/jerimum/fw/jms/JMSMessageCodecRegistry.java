@@ -0,0 +1,98 @@
+package br.com.jerimum.fw.jms;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Codecs of the payload types sent and received by the gateway. <i>String</i> and <i>byte[]</i>
+ * are registered by default; the codec of any other type is resolved once, on first use, in this
+ * order: the codec registered for the nearest superclass, {@link JMSMessageCodecs#xml(Class)} for
+ * {@link XmlRootElement} classes and {@link JMSMessageCodecs#json(java.lang.reflect.Type)} for the
+ * others.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSMessageCodecRegistry {
+
+    private final ConcurrentMap<Class<?>, JMSMessageCodec<?>> codecs =
+        new ConcurrentHashMap<Class<?>, JMSMessageCodec<?>>();
+
+    public JMSMessageCodecRegistry() {
+        register(String.class, JMSMessageCodecs.text());
+        register(byte[].class, JMSMessageCodecs.bytes());
+    }
+
+    /**
+     * Registers the codec of the payload type, replacing the current one.
+     * 
+     * @param type
+     * @param codec
+     */
+    public <T> void register(Class<T> type, JMSMessageCodec<T> codec) {
+        this.codecs.put(type, codec);
+    }
+
+    /**
+     * Returns the codec of the payload type.
+     * 
+     * @param type
+     * @return {@link JMSMessageCodec}<T>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JMSMessageCodec<T> getCodec(Class<T> type) {
+
+        JMSMessageCodec<?> codec = this.codecs.get(type);
+        if (codec == null) {
+            codec = resolveCodec(type);
+            JMSMessageCodec<?> registered = this.codecs.putIfAbsent(type, codec);
+            if (registered != null) {
+                codec = registered;
+            }
+        }
+        return (JMSMessageCodec<T>) codec;
+    }
+
+    /**
+     * Returns the creator of the message carrying the payload.
+     * 
+     * @param payload
+     * @return {@link JMSMessageCreator}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JMSMessageCreator<Message> creator(T payload) {
+        return new JMSCodecMessageCreator<T>(getCodec((Class<T>) payload.getClass()), payload);
+    }
+
+    /**
+     * Reads the payload of the message.
+     * 
+     * @param message
+     * @param type
+     * @return T
+     * @throws JMSException
+     */
+    public <T> T decode(Message message, Class<T> type) throws JMSException {
+        return getCodec(type).decode(message);
+    }
+
+    private JMSMessageCodec<?> resolveCodec(Class<?> type) {
+
+        for (Class<?> superclass = type.getSuperclass(); superclass != null && superclass != Object.class;
+            superclass = superclass.getSuperclass()) {
+            JMSMessageCodec<?> codec = this.codecs.get(superclass);
+            if (codec != null) {
+                return codec;
+            }
+        }
+
+        if (type.isAnnotationPresent(XmlRootElement.class)) {
+            return JMSMessageCodecs.xml(type);
+        }
+        return JMSMessageCodecs.json(type);
+    }
+
+}
@@ -0,0 +1,203 @@
+package br.com.jerimum.fw.jms;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * Common {@link JMSMessageCodec} implementations. The XML and JSON codecs write the payload
+ * straight into the body of a {@link BytesMessage}, encoded in UTF-8 and marked with the
+ * {@link JMSHeaders#CHARSET} property, and read it back through a {@link JMSMessageBodyReader}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSMessageCodecs {
+
+    private static final Charset UTF_8 = JMSMessageBodyReader.UTF_8;
+    private static final JMSMessageBodyReader BODY_READER = new JMSMessageBodyReader();
+
+    private JMSMessageCodecs() {
+
+    }
+
+    /**
+     * Sends the text in a {@link TextMessage}. Reads the text of a {@link TextMessage} or
+     * {@link BytesMessage}.
+     * 
+     * @return {@link JMSMessageCodec}<String>
+     */
+    public static JMSMessageCodec<String> text() {
+
+        return new JMSMessageCodec<String>() {
+            @Override
+            public Message encode(Session session, String payload) throws JMSException {
+                return session.createTextMessage(payload);
+            }
+
+            @Override
+            public String decode(Message message) throws JMSException {
+                return BODY_READER.readText(message);
+            }
+        };
+    }
+
+    /**
+     * Sends the bytes in a {@link BytesMessage}. Reads the body of a {@link BytesMessage} or the
+     * encoded text of a {@link TextMessage}.
+     * 
+     * @return {@link JMSMessageCodec}<byte[]>
+     */
+    public static JMSMessageCodec<byte[]> bytes() {
+
+        return new JMSMessageCodec<byte[]>() {
+            @Override
+            public Message encode(Session session, byte[] payload) throws JMSException {
+
+                BytesMessage message = session.createBytesMessage();
+                message.writeBytes(payload);
+                return message;
+            }
+
+            @Override
+            public byte[] decode(Message message) throws JMSException {
+
+                if (message instanceof TextMessage) {
+                    String text = ((TextMessage) message).getText();
+                    return text != null ? text.getBytes(BODY_READER.getCharset(message)) : null;
+                }
+
+                if (!(message instanceof BytesMessage)) {
+                    throw new MessageFormatException("Unsupported message type: " + message.getClass().getName());
+                }
+
+                BytesMessage bytesMessage = (BytesMessage) message;
+                bytesMessage.reset();
+                byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+                bytesMessage.readBytes(body);
+                return body;
+            }
+        };
+    }
+
+    /**
+     * Sends the JAXB-annotated object as XML. The {@link JAXBContext} of the type is created once.
+     * 
+     * @param type
+     * @return {@link JMSMessageCodec}<T>
+     * @throws IllegalArgumentException if the type is not JAXB-annotated.
+     */
+    public static <T> JMSMessageCodec<T> xml(final Class<T> type) {
+
+        final JAXBContext context;
+        try {
+            context = JAXBContext.newInstance(type);
+        } catch (JAXBException e) {
+            throw new IllegalArgumentException("Unable to create JAXB context of: " + type, e);
+        }
+
+        return new JMSMessageCodec<T>() {
+            @Override
+            public Message encode(Session session, T payload) throws JMSException {
+
+                BytesMessage message = session.createBytesMessage();
+                message.setStringProperty(JMSHeaders.CHARSET, UTF_8.name());
+                try {
+
+                    Marshaller marshaller = context.createMarshaller();
+                    marshaller.setProperty(Marshaller.JAXB_ENCODING, UTF_8.name());
+                    marshaller.marshal(payload, new JMSBytesMessageOutputStream(message));
+                    return message;
+
+                } catch (JAXBException e) {
+                    throw failure("Unable to write XML message body!", e);
+                }
+            }
+
+            @Override
+            public T decode(Message message) throws JMSException {
+
+                try {
+
+                    Unmarshaller unmarshaller = context.createUnmarshaller();
+                    Object value = message instanceof BytesMessage && !message.propertyExists(JMSHeaders.CHARSET)
+                        ? unmarshaller.unmarshal(BODY_READER.openStream(message))
+                        : unmarshaller.unmarshal(BODY_READER.openReader(message));
+                    return type.cast(value instanceof JAXBElement ? ((JAXBElement<?>) value).getValue() : value);
+
+                } catch (JAXBException e) {
+                    throw failure("Unable to read XML message body!", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends the object as JSON, using the same Gson settings of
+     * {@link br.com.jerimum.fw.json.JSONUtils}.
+     * 
+     * @param type
+     * @return {@link JMSMessageCodec}<T>
+     */
+    public static <T> JMSMessageCodec<T> json(final Type type) {
+
+        final Gson gson = new GsonBuilder().setDateFormat(DateFormat.FULL, DateFormat.FULL).create();
+        return new JMSMessageCodec<T>() {
+            @Override
+            public Message encode(Session session, T payload) throws JMSException {
+
+                BytesMessage message = session.createBytesMessage();
+                message.setStringProperty(JMSHeaders.CHARSET, UTF_8.name());
+                try {
+
+                    Writer writer = new OutputStreamWriter(new JMSBytesMessageOutputStream(message), UTF_8);
+                    gson.toJson(payload, type, writer);
+                    writer.flush();
+                    return message;
+
+                } catch (IOException e) {
+                    throw failure("Unable to write JSON message body!", e);
+                } catch (JsonParseException e) {
+                    throw failure("Unable to write JSON message body!", e);
+                }
+            }
+
+            @Override
+            public T decode(Message message) throws JMSException {
+
+                try {
+                    return gson.fromJson(BODY_READER.openReader(message), type);
+                } catch (JsonParseException e) {
+                    throw failure("Unable to read JSON message body!", e);
+                }
+            }
+        };
+    }
+
+    private static JMSException failure(String reason, Exception cause) {
+
+        JMSException failure = new MessageFormatException(reason);
+        failure.setLinkedException(cause);
+        failure.initCause(cause);
+        return failure;
+    }
+
+}
@@ -1,81 +1,174 @@
 package br.com.jerimum.fw.jms;
 
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.MapMessage;
 import javax.jms.Message;
+import javax.jms.MessageFormatException;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.jms.StreamMessage;
 import javax.jms.TextMessage;
 
+import org.springframework.core.GenericTypeResolver;
 import org.springframework.jms.core.MessageCreator;
 
 import lombok.Getter;
 
 /**
- * Utility jms message creator class.
+ * Utility jms message creator class. The message type is taken from the generic type of the
+ * subclass, resolved once per class. A type variable resolves to its bound.
  * 
  * @author Dali Freire - dalifreire@gmail.com
  * @param <T>
  */
 public abstract class JMSMessageCreator<T extends Message> implements MessageCreator {
 
+    private static final ConcurrentMap<Class<?>, Class<?>> MESSAGE_TYPES = new ConcurrentHashMap<Class<?>, Class<?>>();
+
     @Getter
     private T message;
     @Getter
     private Class<T> messageType;
 
+    private final MessageFactory messageFactory;
+
     @SuppressWarnings("unchecked")
     public JMSMessageCreator() {
-        Type genericSuperclass = getClass().getGenericSuperclass();
-        ParameterizedType type = (ParameterizedType) genericSuperclass;
-        this.messageType = (Class<T>) type.getActualTypeArguments()[0];
+
+        this.messageType = (Class<T>) getMessageType(getClass());
+        this.messageFactory = MessageFactory.of(this.messageType);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public Message createMessage(Session session) throws JMSException {
 
-        if (this.messageType.equals(TextMessage.class)) {
+        this.message = newMessage(session);
+        setParams(this.message);
+        return this.message;
+    }
 
-            this.message = (T) session.createTextMessage();
+    public abstract void setParams(T message) throws JMSException;
 
-        } else if (this.messageType.equals(MapMessage.class)) {
+    /**
+     * Creates the empty message filled by {@link #setParams(Message)}. By default the session
+     * creates a message of the <i>messageType</i>.
+     * 
+     * @param session
+     * @return T
+     * @throws JMSException
+     */
+    @SuppressWarnings("unchecked")
+    protected T newMessage(Session session) throws JMSException {
 
-            this.message = (T) session.createMapMessage();
+        if (this.messageFactory == null) {
+            throw new MessageFormatException("Unsupported message type: " + this.messageType);
+        }
+        return (T) this.messageFactory.createMessage(session);
+    }
 
-        } else if (this.messageType.equals(BytesMessage.class)) {
+    @Override
+    public String toString() {
+        return getClass().getName() + " - message: \n"
+            + (this.message != null ? this.message.toString() : "message not exists yet!");
+    }
 
-            this.message = (T) session.createBytesMessage();
+    private static Class<?> getMessageType(Class<?> creatorClass) {
 
-        } else if (this.messageType.equals(ObjectMessage.class)) {
+        Class<?> messageType = MESSAGE_TYPES.get(creatorClass);
+        if (messageType == null) {
+            messageType = resolveMessageType(creatorClass);
+            MESSAGE_TYPES.putIfAbsent(creatorClass, messageType);
+        }
+        return messageType;
+    }
 
-            this.message = (T) session.createObjectMessage();
+    private static Class<?> resolveMessageType(Class<?> creatorClass) {
 
-        } else if (this.messageType.equals(StreamMessage.class)) {
+        Class<?> current = creatorClass;
+        while (current.getSuperclass() != JMSMessageCreator.class) {
+            current = current.getSuperclass();
+        }
 
-            this.message = (T) session.createStreamMessage();
+        Class<?> messageType = current.getGenericSuperclass() instanceof ParameterizedType
+            ? GenericTypeResolver.resolveTypeArgument(creatorClass, JMSMessageCreator.class) : null;
+        if (messageType == null) {
+            throw new IllegalArgumentException("Unable to resolve the message type of " + creatorClass.getName()
+                + ": declare it as the type argument of JMSMessageCreator");
+        }
+        return messageType;
+    }
 
-        } else if (this.messageType.equals(Message.class)) {
+    /**
+     * Session factory method of each message type.
+     */
+    private enum MessageFactory {
+
+        TEXT(TextMessage.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createTextMessage();
+            }
+        },
+        MAP(MapMessage.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createMapMessage();
+            }
+        },
+        BYTES(BytesMessage.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createBytesMessage();
+            }
+        },
+        OBJECT(ObjectMessage.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createObjectMessage();
+            }
+        },
+        STREAM(StreamMessage.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createStreamMessage();
+            }
+        },
+        MESSAGE(Message.class) {
+            @Override
+            Message createMessage(Session session) throws JMSException {
+                return session.createMessage();
+            }
+        };
+
+        private static final Map<Class<?>, MessageFactory> BY_MESSAGE_TYPE = new HashMap<Class<?>, MessageFactory>();
+
+        static {
+            for (MessageFactory messageFactory : values()) {
+                BY_MESSAGE_TYPE.put(messageFactory.messageType, messageFactory);
+            }
+        }
 
-            this.message = (T) session.createMessage();
+        private final Class<? extends Message> messageType;
 
+        MessageFactory(Class<? extends Message> messageType) {
+            this.messageType = messageType;
         }
 
-        setParams(this.message);
-        return this.message;
-    }
-
-    public abstract void setParams(T message) throws JMSException;
+        abstract Message createMessage(Session session) throws JMSException;
 
-    @Override
-    public String toString() {
-        return getClass().getName() + " - message: \n"
-            + (this.message != null ? this.message.toString() : "message not exists yet!");
+        /**
+         * Returns the factory of the message type or <code>null</code> if it is not supported.
+         */
+        static MessageFactory of(Class<?> messageType) {
+            return BY_MESSAGE_TYPE.get(messageType);
+        }
     }
 
 }
@@ -0,0 +1,73 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import lombok.Getter;
+
+/**
+ * Base class of the {@link JMSMessageCreator}s that change the message built by another creator.
+ * The message is created and filled by the decorated creator, which keeps its message type and
+ * its own reference to the message, and is then given to {@link #decorate(Message)}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public abstract class JMSMessageCreatorDecorator extends JMSMessageCreator<Message> {
+
+    @Getter
+    private final JMSMessageCreator<?> messageCreator;
+
+    protected JMSMessageCreatorDecorator(JMSMessageCreator<?> messageCreator) {
+
+        if (messageCreator == null) {
+            throw new IllegalArgumentException("Message creator cannot be null!");
+        }
+        this.messageCreator = messageCreator;
+    }
+
+    @Override
+    public Message createMessage(Session session) throws JMSException {
+
+        Message message = this.messageCreator.createMessage(session);
+        decorate(message);
+        return message;
+    }
+
+    /**
+     * Fills the message through the decorated creator.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void setParams(Message message) throws JMSException {
+        ((JMSMessageCreator<Message>) this.messageCreator).setParams(message);
+    }
+
+    /**
+     * Changes the message created by the decorated creator.
+     * 
+     * @param message
+     * @throws JMSException
+     */
+    protected abstract void decorate(Message message) throws JMSException;
+
+    /**
+     * Returns the message created by the decorated creator.
+     */
+    @Override
+    public Message getMessage() {
+        return this.messageCreator.getMessage();
+    }
+
+    @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Class<Message> getMessageType() {
+        return (Class) this.messageCreator.getMessageType();
+    }
+
+    @Override
+    public String toString() {
+        return this.messageCreator.toString();
+    }
+
+}
@@ -0,0 +1,23 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Extracts the business key of a message, used to group the messages that belong to the same
+ * entity. See {@link JMSMessageKeyExtractors} for the common implementations.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public interface JMSMessageKeyExtractor {
+
+    /**
+     * Returns the key of the message.
+     * 
+     * @param message
+     * @return {@link String} or <code>null</code> if the message has no key.
+     * @throws JMSException
+     */
+    String getKey(Message message) throws JMSException;
+
+}
@@ -0,0 +1,64 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Common {@link JMSMessageKeyExtractor} implementations.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSMessageKeyExtractors {
+
+    private JMSMessageKeyExtractors() {
+
+    }
+
+    /**
+     * Uses the <i>JMSMessageID</i> as key.
+     * 
+     * @return {@link JMSMessageKeyExtractor}
+     */
+    public static JMSMessageKeyExtractor messageID() {
+
+        return new JMSMessageKeyExtractor() {
+            @Override
+            public String getKey(Message message) throws JMSException {
+                return message.getJMSMessageID();
+            }
+        };
+    }
+
+    /**
+     * Uses the <i>JMSCorrelationID</i> as key.
+     * 
+     * @return {@link JMSMessageKeyExtractor}
+     */
+    public static JMSMessageKeyExtractor correlationID() {
+
+        return new JMSMessageKeyExtractor() {
+            @Override
+            public String getKey(Message message) throws JMSException {
+                return message.getJMSCorrelationID();
+            }
+        };
+    }
+
+    /**
+     * Uses the value of the message property as key.
+     * 
+     * @param propertyName
+     * @return {@link JMSMessageKeyExtractor}
+     */
+    public static JMSMessageKeyExtractor property(final String propertyName) {
+
+        return new JMSMessageKeyExtractor() {
+            @Override
+            public String getKey(Message message) throws JMSException {
+                Object value = message.getObjectProperty(propertyName);
+                return value != null ? value.toString() : null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,110 @@
+package br.com.jerimum.fw.jms;
+
+import java.util.Enumeration;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageEOFException;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TextMessage;
+
+/**
+ * Utility class for handling JMS messages.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSMessageUtils {
+
+    private JMSMessageUtils() {
+
+    }
+
+    /**
+     * Creates on the session a new message with the body, the properties and the
+     * <i>JMSCorrelationID</i>, <i>JMSType</i> and <i>JMSReplyTo</i> headers of the given message.
+     * The properties defined by the JMS provider (<i>JMSX</i> and <i>JMS_</i>) are not copied.
+     * 
+     * @param session
+     * @param message
+     * @return {@link Message}
+     * @throws JMSException
+     */
+    public static Message copyMessage(Session session, Message message) throws JMSException {
+
+        Message copy;
+        if (message instanceof TextMessage) {
+
+            copy = session.createTextMessage(((TextMessage) message).getText());
+
+        } else if (message instanceof BytesMessage) {
+
+            BytesMessage bytesMessage = (BytesMessage) message;
+            bytesMessage.reset();
+            byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(body);
+            BytesMessage bytesCopy = session.createBytesMessage();
+            bytesCopy.writeBytes(body);
+            copy = bytesCopy;
+
+        } else if (message instanceof MapMessage) {
+
+            MapMessage mapMessage = (MapMessage) message;
+            MapMessage mapCopy = session.createMapMessage();
+            Enumeration<?> names = mapMessage.getMapNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                mapCopy.setObject(name, mapMessage.getObject(name));
+            }
+            copy = mapCopy;
+
+        } else if (message instanceof ObjectMessage) {
+
+            copy = session.createObjectMessage(((ObjectMessage) message).getObject());
+
+        } else if (message instanceof StreamMessage) {
+
+            StreamMessage streamMessage = (StreamMessage) message;
+            streamMessage.reset();
+            StreamMessage streamCopy = session.createStreamMessage();
+            try {
+                while (true) {
+                    streamCopy.writeObject(streamMessage.readObject());
+                }
+            } catch (MessageEOFException e) {
+                copy = streamCopy;
+            }
+
+        } else {
+            copy = session.createMessage();
+        }
+
+        copy.setJMSCorrelationID(message.getJMSCorrelationID());
+        copy.setJMSType(message.getJMSType());
+        copy.setJMSReplyTo(message.getJMSReplyTo());
+        copyProperties(message, copy);
+        return copy;
+    }
+
+    /**
+     * Copies the application properties of the source message to the target message.
+     * 
+     * @param source
+     * @param target
+     * @throws JMSException
+     */
+    public static void copyProperties(Message source, Message target) throws JMSException {
+
+        Enumeration<?> names = source.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            if (!name.startsWith("JMSX") && !name.startsWith("JMS_")) {
+                target.setObjectProperty(name, source.getObjectProperty(name));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package br.com.jerimum.fw.jms;
+
+import javax.jms.Message;
+
+import org.springframework.jms.core.JmsTemplate;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Named quality of service settings of the messages sent by the JMS gateway: priority,
+ * persistence and time to live. The settings are passed to the producer only when
+ * <i>explicitQosEnabled</i>; otherwise the broker defaults are used.
+ * <p>
+ * A profile is applied to a dedicated {@link JmsTemplate} the first time it is used, so it should
+ * not be changed afterwards.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSQoSProfile {
+
+    public static final int MIN_PRIORITY = 0;
+    public static final int MAX_PRIORITY = 9;
+
+    @Getter
+    private final String name;
+    @Getter
+    private int priority = Message.DEFAULT_PRIORITY;
+    @Getter
+    @Setter
+    private boolean deliveryPersistent;
+
+    /**
+     * Time to live of the messages in milliseconds, <code>0</code> for no expiration.
+     */
+    @Getter
+    @Setter
+    private long timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+    @Getter
+    @Setter
+    private boolean explicitQosEnabled = true;
+
+    public JMSQoSProfile(String name) {
+        this.name = name;
+    }
+
+    public JMSQoSProfile(String name, int priority, boolean deliveryPersistent) {
+        this(name);
+        setPriority(priority);
+        this.deliveryPersistent = deliveryPersistent;
+    }
+
+    /**
+     * Profile of the latency-sensitive requests: highest priority, not persistent.
+     * 
+     * @return {@link JMSQoSProfile}
+     */
+    public static JMSQoSProfile interactive() {
+        return new JMSQoSProfile("interactive", MAX_PRIORITY, false);
+    }
+
+    /**
+     * Profile of the bulk traffic: lowest priority, persistent.
+     * 
+     * @return {@link JMSQoSProfile}
+     */
+    public static JMSQoSProfile bulk() {
+        return new JMSQoSProfile("bulk", MIN_PRIORITY, true);
+    }
+
+    /**
+     * @param priority >> JMS priority, from 0 (lowest) to 9 (highest).
+     */
+    public void setPriority(int priority) {
+
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("Priority must be between 0 and 9: " + priority);
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * Applies the settings of this profile to the template.
+     * 
+     * @param template
+     */
+    public void apply(JmsTemplate template) {
+
+        template.setExplicitQosEnabled(this.explicitQosEnabled);
+        template.setPriority(this.priority);
+        template.setDeliveryPersistent(this.deliveryPersistent);
+        template.setTimeToLive(this.timeToLive);
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " [priority=" + this.priority + ", persistent=" + this.deliveryPersistent
+            + ", timeToLive=" + this.timeToLive + ", explicitQosEnabled=" + this.explicitQosEnabled + "]";
+    }
+
+}
@@ -0,0 +1,33 @@
+package br.com.jerimum.fw.jms;
+
+import java.util.List;
+
+import javax.jms.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Messages received by a single receive call and the time the call waited for them.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class JMSReceiveResult {
+
+    private final List<Message> messages;
+    private final long waitTime;
+
+    /**
+     * Returns the first message received or <code>null</code> if none was received.
+     * 
+     * @return {@link Message}
+     */
+    public Message getFirstMessage() {
+        return this.messages.isEmpty() ? null : this.messages.get(0);
+    }
+
+}
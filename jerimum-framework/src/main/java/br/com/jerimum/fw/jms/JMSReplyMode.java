@@ -0,0 +1,28 @@
+package br.com.jerimum.fw.jms;
+
+/**
+ * Strategies used by the JMS gateway to wait for the response of a request/reply operation.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public enum JMSReplyMode {
+
+    /**
+     * Each request opens its own consumer on the read queue filtered by a
+     * <i>JMSCorrelationID</i> selector.
+     */
+    SELECTOR,
+
+    /**
+     * One long-lived consumer per read queue dispatches the responses to the waiting callers
+     * through a correlation map. The read queue must be used only by this gateway instance.
+     */
+    SHARED_CONSUMER,
+
+    /**
+     * Each gateway instance creates its own temporary queue, sets it as the <i>JMSReplyTo</i> of
+     * the requests and consumes only its own responses. The read queue is not used.
+     */
+    TEMPORARY_QUEUE
+
+}
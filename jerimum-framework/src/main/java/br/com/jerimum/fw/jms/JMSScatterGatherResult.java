@@ -0,0 +1,49 @@
+package br.com.jerimum.fw.jms;
+
+import java.util.Map;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Responses collected by a scatter-gather call. The queues that answered are in
+ * <i>replies</i>, in the order the responses arrived, and the queues whose request failed or
+ * timed out are in <i>failures</i>. The queues still being waited for when the quorum was reached
+ * are in neither.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class JMSScatterGatherResult {
+
+    private final Map<Queue, Message> replies;
+    private final Map<Queue, Throwable> failures;
+    private final int requestCount;
+    private final int quorum;
+    private final long waitTime;
+
+    /**
+     * Returns <code>true</code> when all the queues answered.
+     * 
+     * @return boolean
+     */
+    public boolean isComplete() {
+        return this.replies.size() == this.requestCount;
+    }
+
+    /**
+     * Returns <code>true</code> when at least <i>quorum</i> queues answered.
+     * 
+     * @return boolean
+     */
+    public boolean isQuorumReached() {
+        return this.replies.size() >= this.quorum;
+    }
+
+}
@@ -0,0 +1,355 @@
+package br.com.jerimum.fw.jms.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Cache of the text responses received by the JMS gateway, keyed by destination and payload.
+ * Each destination may have its own time-to-live; the size of the cache is bounded and the least
+ * recently used responses are evicted first.
+ * <p>
+ * When an <i>invalidationTopic</i> is set, the cache subscribes to it and drops the responses
+ * named by the messages published there: a {@link TextMessage} with the {@link JMSHeaders#CACHE_QUEUE}
+ * property drops the response of its payload for that queue, a message without text drops all the
+ * responses of the queue and a message without the property drops the whole cache.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSResponseCache implements MessageListener, InitializingBean, DisposableBean {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000L;
+    public static final long DEFAULT_TIME_TO_LIVE = 60000L;
+
+    @Getter
+    @Setter
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+    /**
+     * Time (ms) a response is kept when its destination has no specific time-to-live.
+     */
+    @Getter
+    @Setter
+    private long defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /**
+     * Time (ms) the responses are kept, by queue name. A time-to-live of 0 disables the cache for
+     * the queue.
+     */
+    @Getter
+    @Setter
+    private Map<String, Long> timeToLives = new HashMap<String, Long>();
+
+    /**
+     * Optional connection factory and topic used to invalidate the responses.
+     */
+    @Getter
+    @Setter
+    private ConnectionFactory connectionFactory;
+    @Getter
+    @Setter
+    private Topic invalidationTopic;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private volatile Cache<String, CachedResponse> cache;
+    private DefaultMessageListenerContainer invalidationContainer;
+    private JmsTemplate invalidationTemplate;
+
+    @Override
+    public void afterPropertiesSet() {
+        start();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * Creates the cache and subscribes to the invalidation topic.
+     */
+    public synchronized void start() {
+
+        if (this.cache != null) {
+            return;
+        }
+
+        long maximumTimeToLive = this.defaultTimeToLive;
+        for (Long timeToLive : this.timeToLives.values()) {
+            maximumTimeToLive = Math.max(maximumTimeToLive, timeToLive);
+        }
+
+        this.cache = CacheBuilder.newBuilder().maximumSize(this.maximumSize)
+            .expireAfterWrite(Math.max(1, maximumTimeToLive), TimeUnit.MILLISECONDS).recordStats().build();
+
+        if (this.invalidationTopic != null) {
+
+            this.invalidationTemplate = new JmsTemplate(this.connectionFactory);
+            this.invalidationTemplate.setPubSubDomain(true);
+
+            this.invalidationContainer = new DefaultMessageListenerContainer();
+            this.invalidationContainer.setConnectionFactory(this.connectionFactory);
+            this.invalidationContainer.setDestination(this.invalidationTopic);
+            this.invalidationContainer.setPubSubDomain(true);
+            this.invalidationContainer.setMessageListener(this);
+            this.invalidationContainer.afterPropertiesSet();
+            this.invalidationContainer.start();
+
+            LoggerUtils.logDebug(JMSResponseCache.class, "Response cache invalidated by topic: {}",
+                this.invalidationTopic);
+        }
+    }
+
+    /**
+     * Unsubscribes from the invalidation topic and drops the cached responses.
+     */
+    public synchronized void stop() {
+
+        if (this.invalidationContainer != null) {
+            this.invalidationContainer.shutdown();
+            this.invalidationContainer = null;
+        }
+
+        if (this.cache != null) {
+            this.cache.invalidateAll();
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Returns the cached response or <code>null</code> if there is none.
+     * 
+     * @param queue
+     * @param payload
+     * @return {@link String}
+     * @throws JMSException
+     */
+    public String get(Queue queue, String payload) throws JMSException {
+
+        String key = key(queue.getQueueName(), payload);
+        CachedResponse response = getCache().getIfPresent(key);
+        if (response != null && response.expiresAt < System.currentTimeMillis()) {
+            getCache().invalidate(key);
+            response = null;
+        }
+
+        if (response == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        this.hitCount.incrementAndGet();
+        return response.reply;
+    }
+
+    /**
+     * Caches the response.
+     * 
+     * @param queue
+     * @param payload
+     * @param reply
+     * @throws JMSException
+     */
+    public void put(Queue queue, String payload, String reply) throws JMSException {
+
+        long timeToLive = getTimeToLive(queue.getQueueName());
+        if (timeToLive > 0 && reply != null) {
+            getCache().put(key(queue.getQueueName(), payload),
+                new CachedResponse(reply, System.currentTimeMillis() + timeToLive));
+        }
+    }
+
+    /**
+     * Drops the cached response of the payload.
+     * 
+     * @param queue
+     * @param payload >> <code>null</code> to drop all the responses of the queue.
+     * @throws JMSException
+     */
+    public void invalidate(Queue queue, String payload) throws JMSException {
+        invalidate(queue.getQueueName(), payload);
+    }
+
+    /**
+     * Drops all the cached responses.
+     */
+    public void invalidateAll() {
+        getCache().invalidateAll();
+    }
+
+    /**
+     * Publishes the invalidation of the response in the invalidation topic, so every cache
+     * subscribed to it drops the response.
+     * 
+     * @param queue >> <code>null</code> to drop all the responses.
+     * @param payload >> <code>null</code> to drop all the responses of the queue.
+     * @throws MessageException
+     */
+    public void publishInvalidation(final Queue queue, final String payload) throws MessageException {
+
+        if (this.invalidationTemplate == null) {
+            throw new MessageException("Invalidation topic not configured!");
+        }
+
+        try {
+
+            this.invalidationTemplate.send(this.invalidationTopic, new MessageCreator() {
+                @Override
+                public Message createMessage(Session session) throws JMSException {
+
+                    Message message = payload != null ? session.createTextMessage(payload) : session.createMessage();
+                    if (queue != null) {
+                        message.setStringProperty(JMSHeaders.CACHE_QUEUE, queue.getQueueName());
+                    }
+                    return message;
+                }
+            });
+
+        } catch (Exception e) {
+            throw new MessageException(e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+
+            String queueName = message.getStringProperty(JMSHeaders.CACHE_QUEUE);
+            String payload = message instanceof TextMessage ? ((TextMessage) message).getText() : null;
+            LoggerUtils.logDebug(JMSResponseCache.class, "Invalidating cached responses of '{}': {}", queueName,
+                payload);
+
+            if (queueName == null) {
+                invalidateAll();
+            } else {
+                invalidate(queueName, payload);
+            }
+
+        } catch (JMSException e) {
+            LoggerUtils.logError(JMSResponseCache.class, "Unable to read invalidation message!", e);
+        }
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the fraction of the lookups answered by the cache.
+     * 
+     * @return double
+     */
+    public double getHitRatio() {
+
+        long hits = this.hitCount.get();
+        long lookups = hits + this.missCount.get();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of responses evicted because the cache was full or they expired.
+     * 
+     * @return long
+     */
+    public long getEvictionCount() {
+        return getCache().stats().evictionCount();
+    }
+
+    /**
+     * Returns the number of cached responses.
+     * 
+     * @return long
+     */
+    public long getSize() {
+        return getCache().size();
+    }
+
+    /**
+     * Returns the time-to-live of the responses of the queue.
+     * 
+     * @param queueName
+     * @return long
+     */
+    protected long getTimeToLive(String queueName) {
+
+        Long timeToLive = this.timeToLives.get(queueName);
+        return timeToLive != null ? timeToLive : this.defaultTimeToLive;
+    }
+
+    private void invalidate(String queueName, String payload) {
+
+        if (payload != null) {
+            getCache().invalidate(key(queueName, payload));
+            return;
+        }
+
+        String prefix = key(queueName, "");
+        Iterator<String> keys = getCache().asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    private Cache<String, CachedResponse> getCache() {
+
+        Cache<String, CachedResponse> current = this.cache;
+        if (current == null) {
+            throw new IllegalStateException("Response cache not started!");
+        }
+        return current;
+    }
+
+    private static String key(String queueName, String payload) {
+        return queueName + '\n' + payload;
+    }
+
+    /**
+     * Response kept in the cache.
+     */
+    private static class CachedResponse {
+
+        private final String reply;
+        private final long expiresAt;
+
+        CachedResponse(String reply, long expiresAt) {
+            this.reply = reply;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package br.com.jerimum.fw.jms.claimcheck;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Store of the payloads offloaded by the {@link JMSClaimCheck}. The message carries only the
+ * reference returned by {@link #put(byte[])}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public interface JMSBlobStore {
+
+    /**
+     * Stores the payload.
+     * 
+     * @param payload
+     * @return {@link String} >> Reference of the stored payload.
+     * @throws IOException
+     */
+    String put(byte[] payload) throws IOException;
+
+    /**
+     * Opens the stored payload for reading.
+     * 
+     * @param reference
+     * @return {@link InputStream}
+     * @throws IOException if the reference does not exist.
+     */
+    InputStream open(String reference) throws IOException;
+
+    /**
+     * Removes the stored payload.
+     * 
+     * @param reference
+     * @throws IOException
+     */
+    void delete(String reference) throws IOException;
+
+}
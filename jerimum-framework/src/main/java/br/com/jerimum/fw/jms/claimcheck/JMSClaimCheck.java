@@ -0,0 +1,230 @@
+package br.com.jerimum.fw.jms.claimcheck;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import com.google.common.io.CharStreams;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Claim-check of large text payloads. The text of the messages longer than <i>threshold</i>
+ * characters is offloaded to a {@link JMSBlobStore} and the message carries only its reference in
+ * the {@link JMSHeaders#CLAIM_CHECK} property, keeping the broker memory small.
+ * <p>
+ * The consumer resolves the reference only when it reads the payload, through
+ * {@link #openPayload(Message)} (streamed from the store) or {@link #getText(Message)}. The
+ * payload is kept in the store until {@link #release(Message)} is called, which
+ * {@link #consumeText(Message)} does once the text is read. The payloads never released, such as
+ * those of the expired messages, are removed by the retention sweep of the
+ * {@link JMSFileBlobStore}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSClaimCheck {
+
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Getter
+    private final JMSBlobStore blobStore;
+
+    /**
+     * Number of characters above which the text is offloaded.
+     */
+    @Getter
+    @Setter
+    private int threshold = DEFAULT_THRESHOLD;
+
+    private final AtomicLong checkedCount = new AtomicLong();
+
+    public JMSClaimCheck(JMSBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Creates a claim-check backed by a {@link JMSFileBlobStore} in the given directory.
+     * 
+     * @param directory
+     */
+    public JMSClaimCheck(File directory) {
+        this(new JMSFileBlobStore(directory));
+    }
+
+    /**
+     * Decorates the message creator so the text of the created message is offloaded when it is
+     * longer than the threshold.
+     * 
+     * @param messageCreator
+     * @return {@link JMSMessageCreator}
+     */
+    public JMSMessageCreator<?> decorate(JMSMessageCreator<?> messageCreator) {
+        return new JMSClaimCheckMessageCreator(this, messageCreator);
+    }
+
+    /**
+     * Offloads the text of the message when it is longer than the threshold.
+     * 
+     * @param message
+     * @return boolean >> <code>true</code> if the text was offloaded.
+     * @throws JMSException
+     */
+    public boolean check(Message message) throws JMSException {
+
+        if (!(message instanceof TextMessage) || isClaimCheck(message)) {
+            return false;
+        }
+
+        TextMessage textMessage = (TextMessage) message;
+        String text = textMessage.getText();
+        if (text == null || text.length() <= this.threshold) {
+            return false;
+        }
+
+        String reference;
+        try {
+            reference = this.blobStore.put(text.getBytes(UTF_8));
+        } catch (IOException e) {
+            JMSException failure = new JMSException("Unable to store message payload!");
+            failure.setLinkedException(e);
+            throw failure;
+        }
+
+        textMessage.setText(null);
+        textMessage.setStringProperty(JMSHeaders.CLAIM_CHECK, reference);
+        this.checkedCount.incrementAndGet();
+
+        LoggerUtils.logDebug(JMSClaimCheck.class, "Payload of {} characters offloaded to: {}", text.length(),
+            reference);
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the payload of the message was offloaded.
+     * 
+     * @param message
+     * @return boolean
+     * @throws JMSException
+     */
+    public static boolean isClaimCheck(Message message) throws JMSException {
+        return message.getStringProperty(JMSHeaders.CLAIM_CHECK) != null;
+    }
+
+    /**
+     * Opens the payload of the text message, reading it from the store when it was offloaded.
+     * 
+     * @param message
+     * @return {@link InputStream} >> UTF-8 bytes of the text, or <code>null</code> if it has none.
+     * @throws MessageException
+     */
+    public InputStream openPayload(Message message) throws MessageException {
+
+        try {
+
+            String reference = message.getStringProperty(JMSHeaders.CLAIM_CHECK);
+            if (reference != null) {
+                return this.blobStore.open(reference);
+            }
+
+            String text = ((TextMessage) message).getText();
+            return text != null ? new ByteArrayInputStream(text.getBytes(UTF_8)) : null;
+
+        } catch (Exception e) {
+            throw new MessageException("Unable to read message payload!", e);
+        }
+    }
+
+    /**
+     * Returns the text of the message, reading it from the store when it was offloaded.
+     * 
+     * @param message
+     * @return {@link String}
+     * @throws MessageException
+     */
+    public String getText(Message message) throws MessageException {
+
+        InputStream payload = openPayload(message);
+        if (payload == null) {
+            return null;
+        }
+
+        Reader reader = new InputStreamReader(payload, UTF_8);
+        try {
+            return CharStreams.toString(reader);
+        } catch (IOException e) {
+            throw new MessageException("Unable to read message payload!", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                LoggerUtils.logError(JMSClaimCheck.class, "Unable to close message payload!", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the text of a consumed message and removes its offloaded payload from the store. A
+     * payload that cannot be removed is left to the retention sweep of the store.
+     * 
+     * @param message
+     * @return {@link String}
+     * @throws MessageException
+     */
+    public String consumeText(Message message) throws MessageException {
+
+        String text = getText(message);
+        try {
+            release(message);
+        } catch (MessageException e) {
+            LoggerUtils.logWarning(JMSClaimCheck.class, "Unable to release message payload: {}",
+                e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+        return text;
+    }
+
+    /**
+     * Removes the offloaded payload of the message from the store.
+     * 
+     * @param message
+     * @throws MessageException
+     */
+    public void release(Message message) throws MessageException {
+
+        try {
+
+            String reference = message.getStringProperty(JMSHeaders.CLAIM_CHECK);
+            if (reference != null) {
+                this.blobStore.delete(reference);
+            }
+
+        } catch (Exception e) {
+            throw new MessageException("Unable to release message payload!", e);
+        }
+    }
+
+    /**
+     * Number of payloads offloaded to the store.
+     * 
+     * @return long
+     */
+    public long getCheckedCount() {
+        return this.checkedCount.get();
+    }
+
+}
@@ -0,0 +1,29 @@
+package br.com.jerimum.fw.jms.claimcheck;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.jms.JMSMessageCreatorDecorator;
+
+/**
+ * Decorates a {@link JMSMessageCreator}, offloading the text of the created message through the
+ * {@link JMSClaimCheck} when it is longer than the threshold.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSClaimCheckMessageCreator extends JMSMessageCreatorDecorator {
+
+    private final JMSClaimCheck claimCheck;
+
+    JMSClaimCheckMessageCreator(JMSClaimCheck claimCheck, JMSMessageCreator<?> messageCreator) {
+        super(messageCreator);
+        this.claimCheck = claimCheck;
+    }
+
+    @Override
+    protected void decorate(Message message) throws JMSException {
+        this.claimCheck.check(message);
+    }
+
+}
@@ -0,0 +1,213 @@
+package br.com.jerimum.fw.jms.claimcheck;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * {@link JMSBlobStore} that keeps each payload in a file of a local (or shared) directory. The
+ * payloads are read through memory-mapped windows of the file, so a large payload is streamed
+ * without being copied to the heap.
+ * <p>
+ * The payloads of the messages that are never consumed (expired, timed out or dead-lettered) are
+ * never released, so the payloads older than <i>retentionTime</i> are removed by a sweep run by
+ * {@link #put(byte[])} at most once every <i>sweepInterval</i> milliseconds. The retention time
+ * must be longer than the time a message may wait to be consumed.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSFileBlobStore implements JMSBlobStore {
+
+    public static final long DEFAULT_RETENTION_TIME = TimeUnit.DAYS.toMillis(1);
+    public static final long DEFAULT_SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}");
+    private static final int MAPPING_SIZE = 8 * 1024 * 1024;
+
+    @Getter
+    private final File directory;
+
+    /**
+     * Time (ms) a payload is kept in the store when it is not released. 0 keeps it forever.
+     */
+    @Getter
+    @Setter
+    private long retentionTime = DEFAULT_RETENTION_TIME;
+
+    /**
+     * Minimum time (ms) between two sweeps of the expired payloads.
+     */
+    @Getter
+    @Setter
+    private long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * @param directory >> Created if it does not exist.
+     */
+    public JMSFileBlobStore(File directory) {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create blob directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public String put(byte[] payload) throws IOException {
+
+        long now = System.currentTimeMillis();
+        long previousSweep = this.lastSweep.get();
+        if (now - previousSweep >= this.sweepInterval && this.lastSweep.compareAndSet(previousSweep, now)) {
+            sweep();
+        }
+
+        String reference = UUID.randomUUID().toString();
+        FileOutputStream output = new FileOutputStream(new File(this.directory, reference));
+        try {
+            output.write(payload);
+        } finally {
+            output.close();
+        }
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        return new MappedInputStream(file(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+
+        File file = file(reference);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete blob: " + file);
+        }
+    }
+
+    /**
+     * Removes the payloads stored more than <i>retentionTime</i> milliseconds ago.
+     * 
+     * @return int >> Number of payloads removed.
+     */
+    public int sweep() {
+
+        if (this.retentionTime <= 0) {
+            return 0;
+        }
+
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long expiration = System.currentTimeMillis() - this.retentionTime;
+        int removed = 0;
+        for (File file : files) {
+            if (REFERENCE.matcher(file.getName()).matches() && file.lastModified() < expiration) {
+                if (file.delete()) {
+                    removed++;
+                } else {
+                    LoggerUtils.logWarning(JMSFileBlobStore.class, "Unable to delete expired blob: {}", file);
+                }
+            }
+        }
+
+        if (removed > 0) {
+            LoggerUtils.logDebug(JMSFileBlobStore.class, "{} expired blobs removed from: {}", removed,
+                this.directory);
+        }
+        return removed;
+    }
+
+    private File file(String reference) throws FileNotFoundException {
+
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            throw new FileNotFoundException("Invalid blob reference: " + reference);
+        }
+        return new File(this.directory, reference);
+    }
+
+    /**
+     * Reads the file through consecutive memory-mapped windows of up to {@link #MAPPING_SIZE}
+     * bytes.
+     */
+    private static class MappedInputStream extends InputStream {
+
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private MappedByteBuffer window;
+
+        MappedInputStream(File file) throws IOException {
+            this.randomAccessFile = new RandomAccessFile(file, "r");
+            this.channel = this.randomAccessFile.getChannel();
+            this.size = this.channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextWindow() ? this.window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!nextWindow()) {
+                return -1;
+            }
+
+            int count = Math.min(length, this.window.remaining());
+            this.window.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return this.window != null ? this.window.remaining() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.window = null;
+            this.randomAccessFile.close();
+        }
+
+        private boolean nextWindow() throws IOException {
+
+            if (this.window != null && this.window.hasRemaining()) {
+                return true;
+            }
+
+            if (this.position >= this.size) {
+                return false;
+            }
+
+            long length = Math.min(MAPPING_SIZE, this.size - this.position);
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+            this.position += length;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package br.com.jerimum.fw.jms.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Compression algorithms supported by the {@link JMSCompressor}. The name of the codec is sent in
+ * the message, so the constants must not be renamed.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public enum JMSCompressionCodec {
+
+    /**
+     * zlib (deflate) format. Best compression ratio, more CPU.
+     */
+    DEFLATE {
+        @Override
+        public int maxCompressedLength(int length) {
+            return length;
+        }
+
+        @Override
+        public int compress(byte[] input, int length, byte[] output) {
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+
+                deflater.setInput(input, 0, length);
+                deflater.finish();
+
+                int compressedLength = 0;
+                while (!deflater.finished()) {
+                    if (compressedLength == length) {
+                        return -1;
+                    }
+                    compressedLength += deflater.deflate(output, compressedLength, length - compressedLength);
+                }
+                return compressedLength;
+
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public void decompress(byte[] input, int length, byte[] output, int uncompressedLength)
+            throws IOException {
+
+            Inflater inflater = new Inflater();
+            try {
+
+                inflater.setInput(input, 0, length);
+                int position = 0;
+                while (position < uncompressedLength && !inflater.finished()) {
+                    int count = inflater.inflate(output, position, uncompressedLength - position);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Corrupted deflate payload!");
+                    }
+                    position += count;
+                }
+
+                if (position != uncompressedLength || !inflater.finished()) {
+                    throw new IOException("Corrupted deflate payload!");
+                }
+
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted deflate payload!", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+
+    /**
+     * Snappy format. Lower compression ratio, much faster than deflate.
+     */
+    SNAPPY {
+        @Override
+        public int maxCompressedLength(int length) {
+            return Snappy.maxCompressedLength(length);
+        }
+
+        @Override
+        public int compress(byte[] input, int length, byte[] output) {
+
+            int compressedLength = Snappy.compress(input, 0, length, output, 0);
+            return compressedLength < length ? compressedLength : -1;
+        }
+
+        @Override
+        public void decompress(byte[] input, int length, byte[] output, int uncompressedLength)
+            throws IOException {
+
+            try {
+
+                if (Snappy.getUncompressedLength(input, 0) != uncompressedLength) {
+                    throw new IOException("Corrupted snappy payload!");
+                }
+                Snappy.uncompress(input, 0, length, output, 0);
+
+            } catch (CorruptionException e) {
+                throw new IOException("Corrupted snappy payload!", e);
+            }
+        }
+    };
+
+    /**
+     * Returns the size of the output buffer given to {@link #compress(byte[], int, byte[])}.
+     * 
+     * @param length
+     * @return int
+     */
+    public abstract int maxCompressedLength(int length);
+
+    /**
+     * Compresses the input into the output buffer.
+     * 
+     * @param input
+     * @param length
+     * @param output >> At least {@link #maxCompressedLength(int)} bytes.
+     * @return int >> The compressed length, or -1 if the input does not get smaller.
+     */
+    public abstract int compress(byte[] input, int length, byte[] output);
+
+    /**
+     * Decompresses the input into the output buffer.
+     * 
+     * @param input
+     * @param length
+     * @param output >> At least <i>uncompressedLength</i> bytes.
+     * @param uncompressedLength
+     * @throws IOException if the input is corrupted.
+     */
+    public abstract void decompress(byte[] input, int length, byte[] output, int uncompressedLength)
+        throws IOException;
+
+}
@@ -0,0 +1,29 @@
+package br.com.jerimum.fw.jms.compression;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.jms.JMSMessageCreatorDecorator;
+
+/**
+ * Decorates a {@link JMSMessageCreator}, compressing the body of the created message through the
+ * {@link JMSCompressor} when it is longer than the threshold.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSCompressionMessageCreator extends JMSMessageCreatorDecorator {
+
+    private final JMSCompressor compressor;
+
+    JMSCompressionMessageCreator(JMSCompressor compressor, JMSMessageCreator<?> messageCreator) {
+        super(messageCreator);
+        this.compressor = compressor;
+    }
+
+    @Override
+    protected void decorate(Message message) throws JMSException {
+        this.compressor.compress(message);
+    }
+
+}
@@ -0,0 +1,201 @@
+package br.com.jerimum.fw.jms.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.jms.pool.JMSBufferPool;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Compression stage of the {@link BytesMessage} bodies. The bodies longer than <i>threshold</i>
+ * bytes are compressed with the configured {@link JMSCompressionCodec}, which is named in the
+ * {@link JMSHeaders#CODEC} property together with the original length in
+ * {@link JMSHeaders#UNCOMPRESSED_LENGTH}. A body is sent compressed only when it gets smaller.
+ * <p>
+ * Received messages are decompressed in place by {@link #decompress(Message)}, so the consumer
+ * reads the original body. The intermediate buffers are taken from a {@link JMSBufferPool}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSCompressor {
+
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    @Getter
+    @Setter
+    private JMSCompressionCodec codec = JMSCompressionCodec.SNAPPY;
+
+    /**
+     * Number of bytes above which the body is compressed.
+     */
+    @Getter
+    @Setter
+    private int threshold = DEFAULT_THRESHOLD;
+    @Getter
+    @Setter
+    private JMSBufferPool bufferPool = new JMSBufferPool();
+
+    private final AtomicLong compressedCount = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    /**
+     * Decorates the message creator so the body of the created message is compressed when it is
+     * longer than the threshold.
+     * 
+     * @param messageCreator
+     * @return {@link JMSMessageCreator}
+     */
+    public JMSMessageCreator<?> decorate(JMSMessageCreator<?> messageCreator) {
+        return new JMSCompressionMessageCreator(this, messageCreator);
+    }
+
+    /**
+     * Compresses the body of the message being sent when it is a {@link BytesMessage} longer than
+     * the threshold.
+     * 
+     * @param message
+     * @return boolean >> <code>true</code> if the body was compressed.
+     * @throws JMSException
+     */
+    public boolean compress(Message message) throws JMSException {
+
+        if (!(message instanceof BytesMessage) || message.propertyExists(JMSHeaders.CODEC)) {
+            return false;
+        }
+
+        BytesMessage bytesMessage = (BytesMessage) message;
+        bytesMessage.reset();
+        long bodyLength = bytesMessage.getBodyLength();
+        if (bodyLength <= this.threshold || bodyLength > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        int length = (int) bodyLength;
+        ByteBuffer body = this.bufferPool.acquire(length);
+        ByteBuffer compressed = this.bufferPool.acquire(this.codec.maxCompressedLength(length));
+        try {
+
+            readBody(bytesMessage, body.array(), length);
+            int compressedLength = this.codec.compress(body.array(), length, compressed.array());
+            if (compressedLength < 0 || compressedLength >= length) {
+                return false;
+            }
+
+            bytesMessage.clearBody();
+            bytesMessage.writeBytes(compressed.array(), 0, compressedLength);
+            bytesMessage.setStringProperty(JMSHeaders.CODEC, this.codec.name());
+            bytesMessage.setIntProperty(JMSHeaders.UNCOMPRESSED_LENGTH, length);
+
+            this.compressedCount.incrementAndGet();
+            this.uncompressedBytes.addAndGet(length);
+            this.compressedBytes.addAndGet(compressedLength);
+            return true;
+
+        } finally {
+            this.bufferPool.release(compressed);
+            this.bufferPool.release(body);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the body of the received message is still compressed.
+     * 
+     * @param message
+     * @return boolean
+     * @throws JMSException
+     */
+    public static boolean isCompressed(Message message) throws JMSException {
+
+        return message instanceof BytesMessage && message.propertyExists(JMSHeaders.CODEC)
+            && ((BytesMessage) message).getBodyLength() != message.getIntProperty(JMSHeaders.UNCOMPRESSED_LENGTH);
+    }
+
+    /**
+     * Replaces the compressed body of the received message by the original one. Must be called
+     * before the body is read.
+     * 
+     * @param message
+     * @return boolean >> <code>true</code> if the body was decompressed.
+     * @throws JMSException if the codec is unknown or the body is corrupted.
+     */
+    public boolean decompress(Message message) throws JMSException {
+
+        if (message == null || !isCompressed(message)) {
+            return false;
+        }
+
+        BytesMessage bytesMessage = (BytesMessage) message;
+        String codecName = bytesMessage.getStringProperty(JMSHeaders.CODEC);
+        JMSCompressionCodec messageCodec;
+        try {
+            messageCodec = JMSCompressionCodec.valueOf(codecName);
+        } catch (IllegalArgumentException e) {
+            throw new JMSException("Unknown compression codec: " + codecName);
+        }
+
+        bytesMessage.reset();
+        int length = (int) bytesMessage.getBodyLength();
+        int uncompressedLength = bytesMessage.getIntProperty(JMSHeaders.UNCOMPRESSED_LENGTH);
+        ByteBuffer compressed = this.bufferPool.acquire(length);
+        ByteBuffer body = this.bufferPool.acquire(uncompressedLength);
+        try {
+
+            readBody(bytesMessage, compressed.array(), length);
+            messageCodec.decompress(compressed.array(), length, body.array(), uncompressedLength);
+
+            bytesMessage.clearBody();
+            bytesMessage.writeBytes(body.array(), 0, uncompressedLength);
+            bytesMessage.reset();
+
+            LoggerUtils.logTrace(JMSCompressor.class, "Message body decompressed from {} to {} bytes", length,
+                uncompressedLength);
+            return true;
+
+        } catch (IOException e) {
+            JMSException failure = new JMSException("Unable to decompress message body!");
+            failure.setLinkedException(e);
+            throw failure;
+        } finally {
+            this.bufferPool.release(body);
+            this.bufferPool.release(compressed);
+        }
+    }
+
+    /**
+     * Number of message bodies compressed.
+     * 
+     * @return long
+     */
+    public long getCompressedCount() {
+        return this.compressedCount.get();
+    }
+
+    /**
+     * Returns the ratio between the compressed and the original size of the compressed bodies.
+     * 
+     * @return double
+     */
+    public double getCompressionRatio() {
+
+        long original = this.uncompressedBytes.get();
+        return original == 0 ? 1.0 : (double) this.compressedBytes.get() / original;
+    }
+
+    private static void readBody(BytesMessage message, byte[] buffer, int length) throws JMSException {
+
+        if (message.readBytes(buffer, length) != length) {
+            throw new JMSException("Unexpected end of message body!");
+        }
+    }
+
+}
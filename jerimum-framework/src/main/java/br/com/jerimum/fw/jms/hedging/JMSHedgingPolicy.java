@@ -0,0 +1,210 @@
+package br.com.jerimum.fw.jms.hedging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
+import javax.jms.Queue;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Settings of the hedged requests of the JMS gateway. When the reply of a request has not arrived
+ * after the <i>percentile</i> latency of the recent requests, a duplicate of the request is sent,
+ * to the <i>alternateQueue</i> when set, and the first reply received wins.
+ * <p>
+ * The extra load is capped by <i>budget</i>: each request earns that fraction of a hedge, and a
+ * hedge is sent only when a whole one was earned, so at most <i>budget</i> of the requests are
+ * duplicated, with bursts of up to <i>maxBurst</i> hedges. No request is hedged before
+ * <i>minSamples</i> latencies were recorded.
+ * <p>
+ * The latencies are tracked per destination, each in a {@link JMSLatencyTracker} of
+ * <i>latencyWindowSize</i> samples, so the requests to a slow queue do not delay the hedging of
+ * the requests to a fast one.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSHedgingPolicy {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final double DEFAULT_BUDGET = 0.05;
+    public static final int DEFAULT_MAX_BURST = 10;
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+    public static final long DEFAULT_MIN_DELAY = 1L;
+
+    @Getter
+    private final int latencyWindowSize;
+
+    /**
+     * Fraction of the recent requests that must have been answered before a request is hedged.
+     */
+    @Getter
+    @Setter
+    private double percentile = DEFAULT_PERCENTILE;
+
+    /**
+     * Fraction of the requests that may be hedged.
+     */
+    @Getter
+    @Setter
+    private double budget = DEFAULT_BUDGET;
+    @Getter
+    @Setter
+    private int maxBurst = DEFAULT_MAX_BURST;
+    @Getter
+    @Setter
+    private int minSamples = DEFAULT_MIN_SAMPLES;
+
+    /**
+     * Smallest delay, in milliseconds, before a request is hedged.
+     */
+    @Getter
+    @Setter
+    private long minDelay = DEFAULT_MIN_DELAY;
+
+    /**
+     * Queue the duplicates are sent to. When not set, the queue of the request.
+     */
+    @Getter
+    @Setter
+    private Queue alternateQueue;
+
+    private final ConcurrentMap<String, JMSLatencyTracker> latencyTrackers =
+        new ConcurrentHashMap<String, JMSLatencyTracker>();
+    private double tokens;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgedCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    public JMSHedgingPolicy() {
+        this(JMSLatencyTracker.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param latencyWindowSize >> Number of recent latencies kept per destination.
+     */
+    public JMSHedgingPolicy(int latencyWindowSize) {
+
+        if (latencyWindowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + latencyWindowSize);
+        }
+        this.latencyWindowSize = latencyWindowSize;
+    }
+
+    /**
+     * Counts a new request, earning its share of the hedging budget.
+     */
+    public void requestStarted() {
+
+        this.requestCount.incrementAndGet();
+        synchronized (this) {
+            this.tokens = Math.min(this.maxBurst, this.tokens + this.budget);
+        }
+    }
+
+    /**
+     * Returns the delay after which a request to the queue without reply is hedged.
+     * 
+     * @param queue >> Queue of the request.
+     * @return long >> Delay in milliseconds or <code>-1</code> while there are not enough samples.
+     */
+    public long getHedgeDelay(Queue queue) {
+
+        JMSLatencyTracker latencyTracker = getLatencyTracker(queue);
+        if (latencyTracker.getSampleCount() < Math.max(1, this.minSamples)) {
+            return -1;
+        }
+        return Math.max(this.minDelay, latencyTracker.getPercentile(this.percentile));
+    }
+
+    /**
+     * Returns the latencies of the requests sent to the queue.
+     * 
+     * @param queue
+     * @return {@link JMSLatencyTracker}
+     */
+    public JMSLatencyTracker getLatencyTracker(Queue queue) {
+
+        String name = nameOf(queue);
+        JMSLatencyTracker latencyTracker = this.latencyTrackers.get(name);
+        if (latencyTracker == null) {
+            latencyTracker = new JMSLatencyTracker(this.latencyWindowSize);
+            JMSLatencyTracker existing = this.latencyTrackers.putIfAbsent(name, latencyTracker);
+            if (existing != null) {
+                latencyTracker = existing;
+            }
+        }
+        return latencyTracker;
+    }
+
+    /**
+     * Takes one hedge from the budget.
+     * 
+     * @return boolean >> <code>false</code> if the budget is exhausted.
+     */
+    public boolean tryAcquireHedge() {
+
+        synchronized (this) {
+            if (this.tokens < 1.0) {
+                return false;
+            }
+            this.tokens -= 1.0;
+        }
+        this.hedgedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records the latency of a request answered.
+     * 
+     * @param queue >> Queue of the request.
+     * @param latency >> Latency in milliseconds.
+     * @param hedgeWon >> <code>true</code> if the reply answered the duplicate.
+     */
+    public void requestCompleted(Queue queue, long latency, boolean hedgeWon) {
+
+        getLatencyTracker(queue).record(latency);
+        if (hedgeWon) {
+            this.hedgeWinCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of requests seen by the policy.
+     * 
+     * @return long
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * Number of duplicates sent.
+     * 
+     * @return long
+     */
+    public long getHedgedCount() {
+        return this.hedgedCount.get();
+    }
+
+    /**
+     * Number of requests answered first through their duplicate.
+     * 
+     * @return long
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWinCount.get();
+    }
+
+    private static String nameOf(Queue queue) {
+
+        try {
+            return queue.getQueueName();
+        } catch (JMSException e) {
+            return queue.toString();
+        }
+    }
+
+}
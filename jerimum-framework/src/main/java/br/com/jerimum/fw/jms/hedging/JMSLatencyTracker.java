@@ -0,0 +1,102 @@
+package br.com.jerimum.fw.jms.hedging;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Keeps the latencies of the last <i>windowSize</i> requests and answers their percentiles. The
+ * percentiles are computed over a sorted copy of the window, which is refreshed only after
+ * <i>windowSize / 16</i> new samples, so reading them is cheap.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSLatencyTracker {
+
+    public static final int DEFAULT_WINDOW_SIZE = 1000;
+
+    @Getter
+    private final int windowSize;
+
+    private final long[] samples;
+    private final int refreshInterval;
+    private int count;
+    private int next;
+    private int samplesSinceRefresh;
+    private long[] sorted = new long[0];
+    private long totalCount;
+
+    public JMSLatencyTracker() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize >> Number of recent latencies kept.
+     */
+    public JMSLatencyTracker(int windowSize) {
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.samples = new long[windowSize];
+        this.refreshInterval = Math.max(1, windowSize / 16);
+    }
+
+    /**
+     * Records the latency of a request.
+     * 
+     * @param latency >> Latency in milliseconds.
+     */
+    public synchronized void record(long latency) {
+
+        this.samples[this.next] = latency;
+        this.next = (this.next + 1) % this.windowSize;
+        if (this.count < this.windowSize) {
+            this.count++;
+        }
+        this.samplesSinceRefresh++;
+        this.totalCount++;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the recent requests completed.
+     * 
+     * @param percentile >> From 0.0 to 1.0 (e.g. 0.95 for p95).
+     * @return long >> Latency in milliseconds or <code>-1</code> when nothing was recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+
+        if (this.count == 0) {
+            return -1;
+        }
+
+        if (this.sorted.length != this.count || this.samplesSinceRefresh >= this.refreshInterval) {
+            this.sorted = Arrays.copyOf(this.samples, this.count);
+            Arrays.sort(this.sorted);
+            this.samplesSinceRefresh = 0;
+        }
+
+        int index = (int) Math.ceil(Math.min(1.0, Math.max(0.0, percentile)) * this.sorted.length) - 1;
+        return this.sorted[Math.max(0, index)];
+    }
+
+    /**
+     * Number of latencies in the window.
+     * 
+     * @return int
+     */
+    public synchronized int getSampleCount() {
+        return this.count;
+    }
+
+    /**
+     * Number of latencies recorded since the tracker was created.
+     * 
+     * @return long
+     */
+    public synchronized long getTotalCount() {
+        return this.totalCount;
+    }
+
+}
@@ -1,29 +1,226 @@
 package br.com.jerimum.fw.jms.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
 import javax.jms.Queue;
+import javax.jms.Session;
 import javax.jms.TextMessage;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
 import org.springframework.jms.core.JmsTemplate;
-
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.exception.MessageBatchException;
 import br.com.jerimum.fw.exception.MessageException;
-import br.com.jerimum.fw.jms.JMSMessage;
+import br.com.jerimum.fw.jms.AsyncJMSMessage;
+import br.com.jerimum.fw.jms.JMSHeaders;
 import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.jms.JMSMessageCodecRegistry;
+import br.com.jerimum.fw.jms.JMSQoSProfile;
+import br.com.jerimum.fw.jms.JMSReceiveResult;
+import br.com.jerimum.fw.jms.JMSReplyMode;
+import br.com.jerimum.fw.jms.JMSScatterGatherResult;
+import br.com.jerimum.fw.jms.cache.JMSResponseCache;
+import br.com.jerimum.fw.jms.claimcheck.JMSClaimCheck;
+import br.com.jerimum.fw.jms.compression.JMSCompressor;
+import br.com.jerimum.fw.jms.hedging.JMSHedgingPolicy;
+import br.com.jerimum.fw.jms.metrics.JMSDestinationMetrics;
+import br.com.jerimum.fw.jms.metrics.JMSGatewayMetrics;
+import br.com.jerimum.fw.jms.pool.JMSPooledConnectionFactory;
+import br.com.jerimum.fw.jms.spool.JMSSpool;
 import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * 
  * @author Dali Freire - dalifreire@gmail.com
  */
-public abstract class AbstractJMSMessageImpl implements JMSMessage, InitializingBean {
+public abstract class AbstractJMSMessageImpl implements AsyncJMSMessage, InitializingBean, DisposableBean {
+
+    public static final int DEFAULT_BATCH_COMMIT_SIZE = 100;
+    public static final long DEFAULT_LINGER_TIME = 5L;
+    public static final int DEFAULT_LINGER_BUFFER_SIZE = 10000;
 
     protected JmsTemplate jmsTemplate;
+    protected JmsTemplate batchJmsTemplate;
+    protected JmsTemplate requestJmsTemplate;
+    protected JMSReplyDispatcher replyDispatcher;
+    protected JMSLingerSender lingerSender;
+    protected JMSRequestCoalescer requestCoalescer;
+    protected ScheduledThreadPoolExecutor hedgingScheduler;
+
+    @Getter
+    @Setter
+    private JMSReplyMode replyMode = JMSReplyMode.SELECTOR;
+
+    /**
+     * Optional pool used by the {@link JmsTemplate} instead of {@link #getConnectionFactory()}.
+     */
+    @Getter
+    @Setter
+    private JMSPooledConnectionFactory pooledConnectionFactory;
+
+    /**
+     * Number of messages sent by {@link #sendBatch(List, Queue)} between two commits. It does not
+     * apply when the batch is sent inside a surrounding transaction (e.g. from a listener of a
+     * container on the same connection factory), which commits all the messages at once.
+     */
+    @Getter
+    @Setter
+    private int batchCommitSize = DEFAULT_BATCH_COMMIT_SIZE;
+
+    /**
+     * When enabled, the messages sent by {@link #sendMessage(JMSMessageCreator, Queue)} are
+     * buffered and sent in batches of up to <i>batchCommitSize</i> messages, waiting at most
+     * <i>lingerTime</i> milliseconds.
+     */
+    @Getter
+    @Setter
+    private boolean lingerEnabled;
+    @Getter
+    @Setter
+    private long lingerTime = DEFAULT_LINGER_TIME;
+    @Getter
+    @Setter
+    private int lingerBufferSize = DEFAULT_LINGER_BUFFER_SIZE;
+
+    /**
+     * Optional spool that keeps the messages sent by {@link #sendMessage(JMSMessageCreator, Queue)}
+     * while the broker is unavailable. While the spool has pending messages the new ones are
+     * appended to it, keeping the send order.
+     */
+    @Getter
+    @Setter
+    private JMSSpool spool;
+
+    /**
+     * When enabled, the requests sent by <i>sendAndReceive</i> expire after <i>timeout</i> plus
+     * <i>requestExpirationMargin</i> milliseconds and carry that deadline in the
+     * {@link JMSHeaders#DEADLINE} property, so nobody processes a request after the requester gave
+     * up waiting.
+     */
+    @Getter
+    @Setter
+    private boolean requestExpirationEnabled = true;
+
+    /**
+     * Time (ms) added to the request expiration to tolerate the clock difference between hosts.
+     */
+    @Getter
+    @Setter
+    private long requestExpirationMargin;
+
+    /**
+     * When enabled, a text request identical to one still waiting for its reply (same write queue
+     * and payload) is not sent to the broker: the caller receives the reply of the first request.
+     */
+    @Getter
+    @Setter
+    private boolean requestCoalescingEnabled;
+
+    /**
+     * Optional cache of the replies to the text requests. A request whose reply is cached is not
+     * sent to the broker.
+     */
+    @Getter
+    @Setter
+    private JMSResponseCache responseCache;
+
+    /**
+     * Optional claim-check that offloads the large text payloads sent by the gateway to a blob
+     * store. The replies carrying a claim-check are resolved when their text is read.
+     */
+    @Getter
+    @Setter
+    private JMSClaimCheck claimCheck;
+
+    /**
+     * Optional compression stage of the {@link javax.jms.BytesMessage} bodies sent by the gateway.
+     * The compressed bodies received by the gateway are decompressed before being returned.
+     */
+    @Getter
+    @Setter
+    private JMSCompressor compressor;
+
+    /**
+     * Codecs of the payloads sent and received through {@link #sendObject(Object)} and
+     * {@link #sendAndReceiveObject(Object, Class)}.
+     */
+    @Getter
+    @Setter
+    private JMSMessageCodecRegistry codecRegistry = new JMSMessageCodecRegistry();
+
+    /**
+     * QoS profile of the messages sent by the gateway. When <code>null</code> the messages are
+     * sent not persistent, with the broker default priority and time to live.
+     */
+    @Getter
+    @Setter
+    private JMSQoSProfile qosProfile;
+
+    /**
+     * QoS profiles by queue name, used instead of <i>qosProfile</i> for the messages sent to
+     * these queues. The profiled messages are never buffered by the linger sender.
+     */
+    @Getter
+    @Setter
+    private Map<String, JMSQoSProfile> destinationQosProfiles = new HashMap<String, JMSQoSProfile>();
+
+    /**
+     * Optional hedging of the requests: a late request is sent again and the first reply wins.
+     * Requires the {@link JMSReplyMode#SHARED_CONSUMER} or {@link JMSReplyMode#TEMPORARY_QUEUE}
+     * reply mode.
+     */
+    @Getter
+    @Setter
+    private JMSHedgingPolicy hedgingPolicy;
+
+    /**
+     * Latencies, sizes and errors of the messages sent and received by the gateway, by
+     * destination. Set it to <code>null</code> to disable the instrumentation.
+     */
+    @Getter
+    @Setter
+    private JMSGatewayMetrics metrics = new JMSGatewayMetrics();
+
+    private final ConcurrentMap<JMSQoSProfile, JmsTemplate> qosTemplates =
+        new ConcurrentHashMap<JMSQoSProfile, JmsTemplate>();
+    private final ConcurrentMap<JMSQoSProfile, JmsTemplate> requestQosTemplates =
+        new ConcurrentHashMap<JMSQoSProfile, JmsTemplate>();
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -31,79 +228,650 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
         LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Starting JMS message with JMSConnectionFactory: {}",
             getConnectionFactory());
 
-        this.jmsTemplate = new JmsTemplate(getConnectionFactory());
-        this.jmsTemplate.setDeliveryPersistent(false);
-        this.jmsTemplate.setDeliveryMode(1);
+        ConnectionFactory templateConnectionFactory = getPooledConnectionFactory() != null
+            ? getPooledConnectionFactory() : getConnectionFactory();
+
+        this.jmsTemplate = new JmsTemplate(templateConnectionFactory);
+        if (this.qosProfile != null) {
+            this.qosProfile.apply(this.jmsTemplate);
+        } else {
+            this.jmsTemplate.setExplicitQosEnabled(true);
+            this.jmsTemplate.setDeliveryPersistent(false);
+        }
+
+        this.requestJmsTemplate = createRequestJmsTemplate(getTimeout());
         setTimeOut(getTimeout());
 
+        this.batchJmsTemplate = new JmsTemplate(templateConnectionFactory);
+        this.batchJmsTemplate.setSessionTransacted(true);
+
         LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "JMSTemplate created: {}", this.jmsTemplate);
+
+        if (isRequestCoalescingEnabled()) {
+            this.requestCoalescer = new JMSRequestCoalescer();
+        }
+
+        if (this.lingerEnabled) {
+            this.lingerSender = new JMSLingerSender(this, this.lingerTime, this.batchCommitSize,
+                this.lingerBufferSize);
+            this.lingerSender.start();
+        }
+
+        if (getReplyMode() == JMSReplyMode.SHARED_CONSUMER) {
+            this.replyDispatcher = new JMSReplyDispatcher(getConnectionFactory(), getReadQueue(), getTimeout());
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Replies will be dispatched by: {}",
+                this.replyDispatcher);
+        } else if (getReplyMode() == JMSReplyMode.TEMPORARY_QUEUE) {
+            this.replyDispatcher = new JMSReplyDispatcher(getConnectionFactory(), getTimeout());
+            this.replyDispatcher.start();
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Replies will be received from temporary queue: {}",
+                this.replyDispatcher.getReplyQueue());
+        }
+
+        if (this.hedgingPolicy != null) {
+            if (this.replyDispatcher == null) {
+                LoggerUtils.logWarning(AbstractJMSMessageImpl.class,
+                    "Hedged requests require the SHARED_CONSUMER or TEMPORARY_QUEUE reply mode, hedging disabled!");
+            } else {
+                this.hedgingScheduler = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-hedging-%d").build());
+                this.hedgingScheduler.setRemoveOnCancelPolicy(true);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+
+        if (this.lingerSender != null) {
+            this.lingerSender.stop();
+        }
+
+        if (this.hedgingScheduler != null) {
+            this.hedgingScheduler.shutdownNow();
+        }
+
+        if (this.replyDispatcher != null) {
+            this.replyDispatcher.stop();
+        }
+    }
+
+    /**
+     * Returns the number of text requests that received the reply of an identical request in
+     * flight instead of being sent.
+     * 
+     * @return long
+     */
+    public long getCoalescedRequestCount() {
+        return this.requestCoalescer != null ? this.requestCoalescer.getCoalescedCount() : 0;
+    }
+
+    /**
+     * Sets the timeout for receive messages.
+     * 
+     * @param timeOut
+     */
+    public void setTimeOut(long timeOut) {
+        this.jmsTemplate.setReceiveTimeout(timeOut);
+        this.requestJmsTemplate.setTimeToLive(timeOut + this.requestExpirationMargin);
+    }
+
+    @Override
+    public String sendAndReceive(String message) throws MessageException {
+
+        if (StringUtils.isEmpty(message)) {
+            throw new MessageException("Message cannot be null!");
+        }
+
+        if (this.requestCoalescer == null) {
+            return doSendAndReceive(message);
+        }
+
+        SettableFuture<String> request = SettableFuture.create();
+        SettableFuture<String> inFlight;
+        try {
+            inFlight = this.requestCoalescer.join(JMSRequestCoalescer.key(getWriteQueue(), message), request);
+        } catch (JMSException e) {
+            throw new MessageException(e);
+        }
+
+        if (inFlight != null) {
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Waiting for the reply of identical request...");
+            return waitFor(inFlight);
+        }
+
+        try {
+
+            String reply = doSendAndReceive(message);
+            request.set(reply);
+            return reply;
+
+        } catch (MessageException e) {
+            request.setException(e);
+            throw e;
+        } catch (RuntimeException e) {
+            request.setException(e);
+            throw e;
+        }
+    }
+
+    private String doSendAndReceive(String message) throws MessageException {
+
+        JMSResponseCache cache = getResponseCache();
+        try {
+
+            if (cache != null) {
+                String cachedReply = cache.get(getWriteQueue(), message);
+                if (cachedReply != null) {
+                    return cachedReply;
+                }
+            }
+
+            Message replyMessage = sendAndReceiveMessage(textMessageCreator(message));
+            String reply = replyMessage != null ? getText(replyMessage) : null;
+            if (cache != null) {
+                cache.put(getWriteQueue(), message, reply);
+            }
+            return reply;
+
+        } catch (MessageException e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw e;
+        } catch (Exception e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw new MessageException(e);
+        }
+    }
+
+    @Override
+    public String sendAndReceive(JMSMessageCreator<TextMessage> messageCreator) throws MessageException {
+
+        if (messageCreator == null) {
+            throw new MessageException("Message cannot be null!");
+        }
+
+        try {
+
+            Message reply = sendAndReceiveMessage(messageCreator);
+            return reply != null ? getText(reply) : null;
+
+        } catch (MessageException e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw e;
+        } catch (Exception e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw new MessageException(e);
+        }
+    }
+
+    @Override
+    public <T> T sendAndReceiveObject(Object request, Class<T> responseType) throws MessageException {
+
+        if (request == null) {
+            throw new MessageException("Message cannot be null!");
+        }
+
+        try {
+
+            Message reply = sendAndReceiveMessage(this.codecRegistry.creator(request));
+            if (reply == null) {
+                return null;
+            }
+            if (responseType == String.class) {
+                return responseType.cast(getText(reply));
+            }
+            return this.codecRegistry.decode(reply, responseType);
+
+        } catch (MessageException e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw e;
+        } catch (Exception e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
+            throw new MessageException(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<String> sendAndReceiveAsync(final String message) {
+
+        if (StringUtils.isEmpty(message)) {
+            return Futures.immediateFailedFuture(new MessageException("Message cannot be null!"));
+        }
+
+        if (this.requestCoalescer == null) {
+            return doSendAndReceiveAsync(message);
+        }
+
+        SettableFuture<String> request = SettableFuture.create();
+        SettableFuture<String> inFlight;
+        try {
+            inFlight = this.requestCoalescer.join(JMSRequestCoalescer.key(getWriteQueue(), message), request);
+        } catch (JMSException e) {
+            return Futures.immediateFailedFuture(new MessageException(e));
+        }
+
+        if (inFlight == null) {
+            JMSRequestCoalescer.complete(request, doSendAndReceiveAsync(message));
+            inFlight = request;
+        }
+        return JMSRequestCoalescer.share(inFlight);
+    }
+
+    private ListenableFuture<String> doSendAndReceiveAsync(final String message) {
+
+        final JMSResponseCache cache = getResponseCache();
+        if (cache != null) {
+            try {
+                String cachedReply = cache.get(getWriteQueue(), message);
+                if (cachedReply != null) {
+                    return Futures.immediateFuture(cachedReply);
+                }
+            } catch (JMSException e) {
+                return Futures.immediateFailedFuture(new MessageException(e));
+            }
+        }
+
+        ListenableFuture<Message> replyFuture = sendAndReceiveAsync(textMessageCreator(message));
+        ListenableFuture<String> reply = Futures.transform(replyFuture, new AsyncFunction<Message, String>() {
+            @Override
+            public ListenableFuture<String> apply(Message reply) throws Exception {
+                return Futures.immediateFuture(getText(reply));
+            }
+        });
+
+        if (cache != null) {
+            Futures.addCallback(reply, new FutureCallback<String>() {
+                @Override
+                public void onSuccess(String result) {
+                    try {
+                        cache.put(getWriteQueue(), message, result);
+                    } catch (JMSException e) {
+                        LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to cache reply!", e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    // nothing to cache
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return reply;
+    }
+
+    @Override
+    public ListenableFuture<Message> sendAndReceiveAsync(JMSMessageCreator<?> messageCreator) {
+
+        return sendAndReceiveAsync(messageCreator, getWriteQueue());
+    }
+
+    @Override
+    public ListenableFuture<Message> sendAndReceiveAsync(JMSMessageCreator<?> messageCreator, Queue queue) {
+
+        if (messageCreator == null) {
+            return Futures.immediateFailedFuture(new MessageException("Message cannot be null!"));
+        }
+
+        if (this.replyDispatcher == null) {
+            return Futures.immediateFailedFuture(new MessageException(
+                "Asynchronous request/reply requires the SHARED_CONSUMER or TEMPORARY_QUEUE reply mode!"));
+        }
+
+        JMSDestinationMetrics requestMetrics = getDestinationMetrics(queue);
+        long startTime = requestMetrics != null ? requestMetrics.requestStarted() : 0;
+        try {
+
+            if (this.hedgingScheduler != null) {
+                return trackReply(sendHedgedRequest(messageCreator, queue), requestMetrics, startTime);
+            }
+
+            Message messageSent = sendRequest(messageCreator, queue);
+            return trackReply(decompress(this.replyDispatcher.register(messageSent.getJMSMessageID(), getTimeout())),
+                requestMetrics, startTime);
+
+        } catch (MessageException e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send message!", e);
+            requestFailed(requestMetrics);
+            return Futures.immediateFailedFuture(e);
+        } catch (Exception e) {
+            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send message!", e);
+            requestFailed(requestMetrics);
+            return Futures.immediateFailedFuture(new MessageException(e));
+        }
+    }
+
+    @Override
+    public ListenableFuture<JMSScatterGatherResult> scatterGatherAsync(JMSMessageCreator<?> messageCreator,
+        List<Queue> queues, int quorum, long timeout) {
+
+        if (messageCreator == null) {
+            return Futures.immediateFailedFuture(new MessageException("Message cannot be null!"));
+        }
+
+        if (queues == null || queues.isEmpty()) {
+            return Futures.immediateFailedFuture(new MessageException("Queues cannot be empty!"));
+        }
+
+        if (new HashSet<Queue>(queues).size() != queues.size()) {
+            return Futures.immediateFailedFuture(new MessageException("Queues must be distinct!"));
+        }
+
+        if (this.replyDispatcher == null) {
+            return Futures.immediateFailedFuture(new MessageException(
+                "Scatter-gather requires the SHARED_CONSUMER or TEMPORARY_QUEUE reply mode!"));
+        }
+
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + timeout;
+        JmsTemplate template = timeout == getTimeout() ? this.requestJmsTemplate : createRequestJmsTemplate(timeout);
+
+        Map<Queue, ListenableFuture<Message>> pendingReplies = new LinkedHashMap<Queue, ListenableFuture<Message>>();
+        for (Queue queue : queues) {
+
+            ListenableFuture<Message> reply;
+            JMSDestinationMetrics requestMetrics = getDestinationMetrics(queue);
+            long requestStartTime = requestMetrics != null ? requestMetrics.requestStarted() : 0;
+            try {
+
+                Message messageSent = sendRequest(messageCreator, queue, timeout, template);
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                reply = trackReply(decompress(this.replyDispatcher.register(messageSent.getJMSMessageID(), remaining)),
+                    requestMetrics, requestStartTime);
+
+            } catch (Exception e) {
+                LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send message to '" + queue + "'!", e);
+                requestFailed(requestMetrics);
+                reply = Futures.immediateFailedFuture(e);
+            }
+            pendingReplies.put(queue, reply);
+        }
+
+        int requiredReplies = quorum > 0 ? Math.min(quorum, pendingReplies.size()) : pendingReplies.size();
+        return new JMSScatterGather(pendingReplies, requiredReplies, startTime).gather();
+    }
+
+    @Override
+    public JMSScatterGatherResult scatterGather(JMSMessageCreator<?> messageCreator, List<Queue> queues, int quorum,
+        long timeout) throws MessageException {
+
+        return waitFor(scatterGatherAsync(messageCreator, queues, quorum, timeout));
+    }
+
+    /**
+     * Sends a request message. In the {@link JMSReplyMode#TEMPORARY_QUEUE} mode the
+     * <i>JMSReplyTo</i> of the message is set to the temporary queue of this gateway. When
+     * <i>requestExpirationEnabled</i> the message expires when the requester stops waiting.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @return {@link Message}
+     * @throws MessageException
+     */
+    protected Message sendRequest(JMSMessageCreator<?> messageCreator, Queue queue) throws MessageException {
+
+        return sendRequest(messageCreator, queue, getTimeout(), this.requestJmsTemplate);
+    }
+
+    private Message sendRequest(JMSMessageCreator<?> messageCreator, Queue queue, long timeout,
+        JmsTemplate template) throws MessageException {
+
+        Queue replyQueue = null;
+        if (this.replyDispatcher != null && this.replyDispatcher.isTemporaryReplyQueue()) {
+            replyQueue = this.replyDispatcher.getActiveReplyQueue();
+        }
+
+        JMSQoSProfile destinationQosProfile = getDestinationQosProfile(queue);
+        if (!this.requestExpirationEnabled) {
+            JMSMessageCreator<?> requestCreator = replyQueue == null ? messageCreator
+                : new JMSRequestMessageCreator(messageCreator, replyQueue, 0);
+            return sendMessage(requestCreator, queue,
+                destinationQosProfile != null ? getQosTemplate(destinationQosProfile) : this.jmsTemplate,
+                destinationQosProfile, true);
+        }
+
+        if (destinationQosProfile != null) {
+            template = getRequestQosTemplate(destinationQosProfile, timeout);
+        }
+
+        long deadline = System.currentTimeMillis() + timeout + this.requestExpirationMargin;
+        return sendMessage(new JMSRequestMessageCreator(messageCreator, replyQueue, deadline), queue, template,
+            destinationQosProfile, true);
+    }
+
+    /**
+     * Creates the template used to send the requests that expire after the timeout.
+     * 
+     * @param timeout
+     * @return {@link JmsTemplate}
+     */
+    protected JmsTemplate createRequestJmsTemplate(long timeout) {
+
+        return createRequestJmsTemplate(timeout, this.jmsTemplate);
+    }
+
+    private JmsTemplate createRequestJmsTemplate(long timeout, JmsTemplate qosTemplate) {
+
+        JmsTemplate template = new JmsTemplate(this.jmsTemplate.getConnectionFactory());
+        template.setExplicitQosEnabled(true);
+        template.setDeliveryMode(qosTemplate.getDeliveryMode());
+        template.setPriority(qosTemplate.getPriority());
+        template.setTimeToLive(timeout + this.requestExpirationMargin);
+        return template;
+    }
+
+    /**
+     * Returns the QoS profile of the messages sent to the queue, or <code>null</code> when the
+     * queue has none.
+     * 
+     * @param queue
+     * @return {@link JMSQoSProfile}
+     * @throws MessageException
+     */
+    protected JMSQoSProfile getDestinationQosProfile(Queue queue) throws MessageException {
+
+        if (queue == null || this.destinationQosProfiles == null || this.destinationQosProfiles.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return this.destinationQosProfiles.get(queue.getQueueName());
+        } catch (JMSException e) {
+            throw new MessageException(e);
+        }
+    }
+
+    private JmsTemplate getQosTemplate(JMSQoSProfile profile) {
+
+        JmsTemplate template = this.qosTemplates.get(profile);
+        if (template == null) {
+            template = new JmsTemplate(this.jmsTemplate.getConnectionFactory());
+            profile.apply(template);
+            JmsTemplate existing = this.qosTemplates.putIfAbsent(profile, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private JmsTemplate getRequestQosTemplate(JMSQoSProfile profile, long timeout) {
+
+        if (timeout != getTimeout()) {
+            return createRequestJmsTemplate(timeout, getQosTemplate(profile));
+        }
+
+        JmsTemplate template = this.requestQosTemplates.get(profile);
+        if (template == null) {
+            template = createRequestJmsTemplate(timeout, getQosTemplate(profile));
+            JmsTemplate existing = this.requestQosTemplates.putIfAbsent(profile, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private ListenableFuture<Message> sendHedgedRequest(final JMSMessageCreator<?> messageCreator, Queue queue)
+        throws Exception {
+
+        JMSHedgedRequest.Sender sender = new JMSHedgedRequest.Sender() {
+            @Override
+            public ListenableFuture<Message> send(Queue attemptQueue, long timeout) throws Exception {
+
+                JmsTemplate template = timeout == getTimeout() ? requestJmsTemplate : createRequestJmsTemplate(timeout);
+                Message messageSent = sendRequest(messageCreator, attemptQueue, timeout, template);
+                return decompress(replyDispatcher.register(messageSent.getJMSMessageID(), timeout));
+            }
+        };
+        return new JMSHedgedRequest(this.hedgingPolicy, this.hedgingScheduler, sender, queue, getTimeout()).send();
+    }
+
+    /**
+     * Sends the request to the write queue and waits for its response, hedging the request when a
+     * {@link JMSHedgingPolicy} is active.
+     * 
+     * @param messageCreator
+     * @return {@link Message} or <code>null</code> if the timeout was reached.
+     * @throws JMSException
+     * @throws MessageException
+     */
+    private Message sendAndReceiveMessage(JMSMessageCreator<?> messageCreator) throws JMSException, MessageException {
+
+        if (this.hedgingScheduler == null) {
+
+            JMSDestinationMetrics requestMetrics = getDestinationMetrics(getWriteQueue());
+            if (requestMetrics == null) {
+                return receiveReplyMessage(sendRequest(messageCreator, getWriteQueue()));
+            }
+
+            long startTime = requestMetrics.requestStarted();
+            Message reply;
+            try {
+                reply = receiveReplyMessage(sendRequest(messageCreator, getWriteQueue()));
+            } catch (Exception e) {
+                requestMetrics.requestFailed();
+                throw e;
+            }
+
+            if (reply != null) {
+                requestMetrics.requestCompleted(startTime);
+            } else {
+                requestMetrics.requestTimedOut();
+            }
+            return reply;
+        }
+
+        try {
+            return waitFor(sendAndReceiveAsync(messageCreator, getWriteQueue()));
+        } catch (MessageException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private JMSDestinationMetrics getDestinationMetrics(Destination destination) {
+
+        JMSGatewayMetrics gatewayMetrics = this.metrics;
+        return gatewayMetrics != null ? gatewayMetrics.forDestination(destination) : null;
+    }
+
+    private static ListenableFuture<Message> trackReply(ListenableFuture<Message> reply,
+        final JMSDestinationMetrics requestMetrics, final long startTime) {
+
+        if (requestMetrics == null) {
+            return reply;
+        }
+
+        Futures.addCallback(reply, new FutureCallback<Message>() {
+            @Override
+            public void onSuccess(Message message) {
+                requestMetrics.requestCompleted(startTime);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof TimeoutException) {
+                    requestMetrics.requestTimedOut();
+                } else if (t instanceof CancellationException) {
+                    requestMetrics.requestCancelled();
+                } else {
+                    requestMetrics.requestFailed();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return reply;
+    }
+
+    private static void requestFailed(JMSDestinationMetrics requestMetrics) {
+
+        if (requestMetrics != null) {
+            requestMetrics.requestFailed();
+        }
     }
 
     /**
-     * Sets the timeout for receive messages.
+     * Waits for the response correlated to the message sent, using the configured
+     * {@link JMSReplyMode}.
      * 
-     * @param timeOut
+     * @param messageSent
+     * @return {@link String}
+     * @throws JMSException
+     * @throws MessageException
      */
-    public void setTimeOut(long timeOut) {
-        this.jmsTemplate.setReceiveTimeout(timeOut);
+    protected String receiveReply(Message messageSent) throws JMSException, MessageException {
+
+        Message reply = receiveReplyMessage(messageSent);
+        return reply != null ? getText(reply) : null;
     }
 
-    @Override
-    public String sendAndReceive(String message) throws MessageException {
+    private Message receiveReplyMessage(Message messageSent) throws JMSException, MessageException {
 
-        if (StringUtils.isEmpty(message)) {
-            throw new MessageException("Message cannot be null!");
-        }
+        if (this.replyDispatcher != null) {
 
-        try {
+            Message reply = this.replyDispatcher.receive(messageSent.getJMSMessageID(), getTimeout());
+            if (reply != null && this.compressor != null) {
+                this.compressor.decompress(reply);
+            }
+            return reply;
+        }
 
-            /*
-             * sends the message
-             */
-            Message messageSent = sendTextMessage(message);
+        String messageSelector = String.format("JMSCorrelationID='%s'", messageSent.getJMSMessageID());
+        return receiveMessage(messageSelector);
+    }
 
-            /*
-             * receives the response
-             */
-            String messageSelector = String.format("JMSCorrelationID='%s'", messageSent.getJMSMessageID());
-            return receiveTextMessage(messageSelector);
+    /**
+     * Returns the text of a received message, resolving its claim-check when the payload was
+     * offloaded. The offloaded payload is released once it is read.
+     * 
+     * @param message
+     * @return {@link String}
+     * @throws JMSException
+     * @throws MessageException
+     */
+    protected String getText(Message message) throws JMSException, MessageException {
 
-        } catch (MessageException e) {
-            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
-            throw e;
-        } catch (Exception e) {
-            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
-            throw new MessageException(e);
+        if (this.claimCheck != null && JMSClaimCheck.isClaimCheck(message)) {
+            return this.claimCheck.consumeText(message);
         }
+        return ((TextMessage) message).getText();
     }
 
-    @Override
-    public String sendAndReceive(JMSMessageCreator<TextMessage> messageCreator) throws MessageException {
+    private ListenableFuture<Message> decompress(ListenableFuture<Message> reply) {
 
-        if (messageCreator == null) {
-            throw new MessageException("Message cannot be null!");
+        final JMSCompressor replyCompressor = getCompressor();
+        if (replyCompressor == null) {
+            return reply;
         }
 
-        try {
-
-            /*
-             * sends the message
-             */
-            Message messageSent = sendMessage(messageCreator, getWriteQueue());
-
-            /*
-             * receives the response
-             */
-            String messageSelector = String.format("JMSCorrelationID='%s'", messageSent.getJMSMessageID());
-            return receiveTextMessage(messageSelector);
-
-        } catch (MessageException e) {
-            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
-            throw e;
-        } catch (Exception e) {
-            LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to send/receive message!", e);
-            throw new MessageException(e);
-        }
+        return Futures.transform(reply, new AsyncFunction<Message, Message>() {
+            @Override
+            public ListenableFuture<Message> apply(Message message) throws Exception {
+                replyCompressor.decompress(message);
+                return Futures.immediateFuture(message);
+            }
+        });
     }
 
     @Override
@@ -138,16 +906,71 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
 
         try {
 
-            JMSMessageCreator<TextMessage> messageCreator = new JMSMessageCreator<TextMessage>() {
+            return (TextMessage) sendMessage(textMessageCreator(msg), queue);
+
+        } catch (Exception e) {
+            throw new MessageException(e);
+        }
+    }
+
+    private JMSMessageCreator<TextMessage> textMessageCreator(final String msg) {
+
+        return new JMSMessageCreator<TextMessage>() {
+            @Override
+            public void setParams(TextMessage message) throws JMSException {
+                message.setText(msg);
+            }
+        };
+    }
+
+    @Override
+    public Message sendReply(Message request, final JMSMessageCreator<?> messageCreator) throws MessageException {
+
+        if (request == null || messageCreator == null) {
+            throw new MessageException("Message cannot be null!");
+        }
+
+        JMSDestinationMetrics replyMetrics = null;
+        try {
+
+            Destination replyTo = request.getJMSReplyTo();
+            if (replyTo == null) {
+                throw new MessageException("Request message has no JMSReplyTo!");
+            }
+
+            final String correlationID = request.getJMSMessageID();
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Sending reply of '{}' to '{}'...", correlationID,
+                replyTo);
+            final JMSClaimCheck replyClaimCheck = getClaimCheck();
+            final JMSCompressor replyCompressor = getCompressor();
+            replyMetrics = getDestinationMetrics(replyTo);
+            long startTime = System.nanoTime();
+            jmsTemplate.send(replyTo, new MessageCreator() {
                 @Override
-                public void setParams(TextMessage message) throws JMSException {
-                    message.setText(msg);
+                public Message createMessage(Session session) throws JMSException {
+                    Message reply = messageCreator.createMessage(session);
+                    reply.setJMSCorrelationID(correlationID);
+                    if (replyClaimCheck != null) {
+                        replyClaimCheck.check(reply);
+                    }
+                    if (replyCompressor != null) {
+                        replyCompressor.compress(reply);
+                    }
+                    return reply;
                 }
-            };
+            });
 
-            return (TextMessage) sendMessage(messageCreator, queue);
+            if (replyMetrics != null) {
+                replyMetrics.recordSend(System.nanoTime() - startTime, messageCreator.getMessage());
+            }
+            return messageCreator.getMessage();
 
+        } catch (MessageException e) {
+            throw e;
         } catch (Exception e) {
+            if (replyMetrics != null) {
+                replyMetrics.recordBrokerError();
+            }
             throw new MessageException(e);
         }
     }
@@ -161,58 +984,339 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
     @Override
     public Message sendMessage(JMSMessageCreator<?> messageCreator, Queue queue) throws MessageException {
 
+        return sendMessage(messageCreator, queue, getDestinationQosProfile(queue));
+    }
+
+    @Override
+    public Message sendMessage(JMSMessageCreator<?> messageCreator, Queue queue, JMSQoSProfile qosProfile)
+        throws MessageException {
+
+        if (qosProfile == null) {
+            return sendMessage(messageCreator, queue, this.jmsTemplate, null, false);
+        }
+        return sendMessage(messageCreator, queue, getQosTemplate(qosProfile), qosProfile, false);
+    }
+
+    @Override
+    public Message sendObject(Object payload) throws MessageException {
+
+        return sendObject(payload, getWriteQueue());
+    }
+
+    @Override
+    public Message sendObject(Object payload, Queue queue) throws MessageException {
+
+        if (payload == null) {
+            throw new MessageException("Message cannot be null!");
+        }
+        return sendMessage(this.codecRegistry.creator(payload), queue);
+    }
+
+    /**
+     * Sends the message through the linger buffer, the spool or the template. The requests, which
+     * have a caller waiting for their reply, are never buffered by the linger sender nor spooled:
+     * they fail at once when the broker is unavailable. The messages with a QoS profile are never
+     * buffered by the linger sender.
+     */
+    private Message sendMessage(JMSMessageCreator<?> messageCreator, Queue queue, JmsTemplate template,
+        JMSQoSProfile messageQosProfile, boolean request) throws MessageException {
+
         if (queue == null) {
             throw new MessageException("Queue cannot be null!");
         }
 
+        JMSSpool messageSpool = getSpool();
+        if (this.lingerSender != null && messageQosProfile == null && !request
+            && (messageSpool == null || messageSpool.isEmpty())) {
+            return sendLingering(messageCreator, queue, messageSpool);
+        }
+
+        messageCreator = decorate(messageCreator);
+        if (!request && messageSpool != null && !messageSpool.isEmpty()) {
+            return messageSpool.spool(messageCreator, queue, template);
+        }
+
+        JMSDestinationMetrics destinationMetrics = getDestinationMetrics(queue);
         try {
 
             LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Sending message to queue '{}'...", queue);
-            jmsTemplate.send(queue, messageCreator);
+            long startTime = System.nanoTime();
+            template.send(queue, messageCreator);
+            if (destinationMetrics != null) {
+                destinationMetrics.recordSend(System.nanoTime() - startTime, messageCreator.getMessage());
+            }
             LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Message '{}' sent!", messageCreator.getMessage());
 
             return messageCreator.getMessage();
 
         } catch (Exception e) {
+
+            if (destinationMetrics != null) {
+                destinationMetrics.recordBrokerError();
+            }
+
+            if (!request && messageSpool != null && messageSpool.isSpoolable(e)) {
+                LoggerUtils.logWarning(AbstractJMSMessageImpl.class, "Broker unavailable, spooling message to '{}': {}",
+                    queue, e.getMessage());
+                try {
+                    return messageSpool.spool(messageCreator, queue, template);
+                } catch (MessageException spoolFailure) {
+                    LoggerUtils.logError(AbstractJMSMessageImpl.class, "Unable to spool message!", spoolFailure);
+                }
+            }
             throw new MessageException(e);
         }
     }
 
+    /**
+     * Sends the message through the linger buffer. The claim-check and the compression are
+     * applied by the batch. The message is spooled when its batch fails because the broker is
+     * unavailable.
+     */
+    private Message sendLingering(JMSMessageCreator<?> messageCreator, Queue queue, JMSSpool messageSpool)
+        throws MessageException {
+
+        try {
+
+            ListenableFuture<Message> messageSent = this.lingerSender.send(messageCreator, queue);
+            return getTimeout() > 0 ? waitFor(messageSent, this.lingerTime + getTimeout()) : waitFor(messageSent);
+
+        } catch (MessageException e) {
+
+            Throwable failure = e instanceof MessageBatchException ? e.getCause() : e;
+            if (messageSpool == null || !messageSpool.isSpoolable(failure)) {
+                throw e;
+            }
+
+            LoggerUtils.logWarning(AbstractJMSMessageImpl.class, "Broker unavailable, spooling message to '{}': {}",
+                queue, failure.getMessage());
+            return messageSpool.spool(decorate(messageCreator), queue, this.jmsTemplate);
+        }
+    }
+
+    private JMSMessageCreator<?> decorate(JMSMessageCreator<?> messageCreator) {
+
+        if (this.claimCheck != null) {
+            messageCreator = this.claimCheck.decorate(messageCreator);
+        }
+
+        if (this.compressor != null) {
+            messageCreator = this.compressor.decorate(messageCreator);
+        }
+        return messageCreator;
+    }
+
     @Override
-    public Message receiveMessage(String messageSelector) throws MessageException {
+    public ListenableFuture<Message> sendMessageAsync(JMSMessageCreator<?> messageCreator, Queue queue) {
 
-        return receiveMessage(messageSelector, getReadQueue());
+        try {
+
+            if (this.lingerSender != null && queue != null && getDestinationQosProfile(queue) == null) {
+                return this.lingerSender.send(messageCreator, queue);
+            }
+            return Futures.immediateFuture(sendMessage(messageCreator, queue));
+
+        } catch (MessageException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for the future and unwraps its failure.
+     * 
+     * @param future
+     * @return T
+     * @throws MessageException
+     */
+    protected <T> T waitFor(Future<T> future) throws MessageException {
+
+        try {
+
+            return future.get();
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MessageException) {
+                throw (MessageException) e.getCause();
+            }
+            throw new MessageException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException(e);
+        }
+    }
+
+    /**
+     * Waits at most <i>timeout</i> milliseconds for the future and unwraps its failure. The future
+     * is cancelled when the time is over.
+     * 
+     * @param future
+     * @param timeout
+     * @return T
+     * @throws MessageException caused by a {@link TimeoutException} when the time is over.
+     */
+    protected <T> T waitFor(Future<T> future, long timeout) throws MessageException {
+
+        try {
+
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new MessageException("No response after " + timeout + " ms!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MessageException) {
+                throw (MessageException) e.getCause();
+            }
+            throw new MessageException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException(e);
+        }
     }
 
     @Override
-    public Message receiveMessage(String messageSelector, Queue queue) throws MessageException {
+    public List<Message> sendBatch(final List<JMSMessageCreator<?>> messageCreators, final Queue queue)
+        throws MessageException {
 
-        if (messageSelector == null) {
-            throw new MessageException("MessageSelector cannot be null!");
+        if (messageCreators == null) {
+            throw new MessageException("Messages cannot be null!");
         }
 
         if (queue == null) {
             throw new MessageException("Queue cannot be null!");
         }
 
+        JMSQoSProfile destinationQosProfile = getDestinationQosProfile(queue);
+        final JmsTemplate qosTemplate = destinationQosProfile != null ? getQosTemplate(destinationQosProfile)
+            : this.jmsTemplate;
+        final List<Message> sentMessages = new ArrayList<Message>(messageCreators.size());
+        final AtomicInteger currentIndex = new AtomicInteger();
         try {
 
-            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Selecting message using: {}", messageSelector);
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Sending {} messages to queue '{}'...",
+                messageCreators.size(), queue);
 
-            Message resMessage = null;
-            long finishTime = System.currentTimeMillis() + getTimeout();
-            while (resMessage == null && System.currentTimeMillis() < finishTime) {
+            this.batchJmsTemplate.execute(new SessionCallback<Object>() {
+                @Override
+                public Object doInJms(Session session) throws JMSException {
+                    doSendBatch(session, messageCreators, queue, qosTemplate, sentMessages, currentIndex);
+                    return null;
+                }
+            }, false);
 
-                resMessage = this.jmsTemplate.receiveSelected(queue.getQueueName(), messageSelector);
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "{} messages sent!", sentMessages.size());
+            return sentMessages;
+
+        } catch (Exception e) {
+            JMSDestinationMetrics destinationMetrics = getDestinationMetrics(queue);
+            if (destinationMetrics != null) {
+                destinationMetrics.recordBrokerError();
             }
+            String msg = String.format("Batch interrupted at message %d, %d of %d messages sent!", currentIndex.get(),
+                sentMessages.size(), messageCreators.size());
+            throw new MessageBatchException(msg, e, sentMessages, currentIndex.get());
+        }
+    }
+
+    /**
+     * Sends the messages through the transacted session, committing every
+     * <i>batchCommitSize</i> messages. The uncommitted messages are rolled back on failure.
+     * <p>
+     * When the session belongs to a surrounding transaction, such as the session of a listener
+     * container exposed to the template, the messages are neither committed nor rolled back here:
+     * they are committed or rolled back along with that transaction.
+     * 
+     * @param session
+     * @param messageCreators
+     * @param queue
+     * @param qosTemplate >> Template whose delivery mode, priority and time to live are used when
+     *            its explicit QoS is enabled.
+     * @param sentMessages >> Receives the messages already committed.
+     * @param currentIndex >> Receives the index of the message being sent.
+     * @throws JMSException
+     */
+    protected void doSendBatch(Session session, List<JMSMessageCreator<?>> messageCreators, Queue queue,
+        JmsTemplate qosTemplate, List<Message> sentMessages, AtomicInteger currentIndex) throws JMSException {
+
+        boolean localTransaction = session.getTransacted()
+            && !ConnectionFactoryUtils.isSessionTransactional(session, this.batchJmsTemplate.getConnectionFactory());
+        int commitSize = localTransaction ? Math.max(1, this.batchCommitSize) : Integer.MAX_VALUE;
+        List<Message> uncommitted = new ArrayList<Message>(Math.min(commitSize, messageCreators.size()));
 
-            LoggerUtils.logTrace(AbstractJMSMessageImpl.class, "Received message: '{}'", resMessage);
+        JMSDestinationMetrics destinationMetrics = getDestinationMetrics(queue);
+        MessageProducer producer = session.createProducer(queue);
+        try {
 
-            return resMessage;
+            if (qosTemplate.isExplicitQosEnabled()) {
+                producer.setDeliveryMode(qosTemplate.getDeliveryMode());
+                producer.setPriority(qosTemplate.getPriority());
+                producer.setTimeToLive(qosTemplate.getTimeToLive());
+            }
 
-        } catch (Exception e) {
-            throw new MessageException(e);
+            for (int i = 0; i < messageCreators.size(); i++) {
+
+                currentIndex.set(i);
+                Message message = messageCreators.get(i).createMessage(session);
+                if (this.claimCheck != null) {
+                    this.claimCheck.check(message);
+                }
+                if (this.compressor != null) {
+                    this.compressor.compress(message);
+                }
+                long startTime = System.nanoTime();
+                producer.send(message);
+                if (destinationMetrics != null) {
+                    destinationMetrics.recordSend(System.nanoTime() - startTime, message);
+                }
+                uncommitted.add(message);
+
+                if (uncommitted.size() >= commitSize || i == messageCreators.size() - 1) {
+                    if (localTransaction) {
+                        session.commit();
+                    }
+                    sentMessages.addAll(uncommitted);
+                    uncommitted.clear();
+                }
+            }
+
+        } catch (JMSException e) {
+            if (localTransaction) {
+                JmsUtils.rollbackIfNecessary(session);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (localTransaction) {
+                JmsUtils.rollbackIfNecessary(session);
+            }
+            throw e;
+        } finally {
+            JmsUtils.closeMessageProducer(producer);
+        }
+    }
+
+    @Override
+    public Message receiveMessage(String messageSelector) throws MessageException {
+
+        return receiveMessage(messageSelector, getReadQueue());
+    }
+
+    @Override
+    public Message receiveMessage(String messageSelector, Queue queue) throws MessageException {
+
+        if (messageSelector == null) {
+            throw new MessageException("MessageSelector cannot be null!");
+        }
+
+        if (queue == null) {
+            throw new MessageException("Queue cannot be null!");
         }
+
+        LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Selecting message using: {}", messageSelector);
+
+        Message resMessage = receiveMessages(messageSelector, queue, 1, getTimeout()).getFirstMessage();
+        LoggerUtils.logTrace(AbstractJMSMessageImpl.class, "Received message: '{}'", resMessage);
+
+        return resMessage;
     }
 
     /**
@@ -228,8 +1332,8 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
 
         try {
 
-            TextMessage receivedMessage = (TextMessage) receiveMessage(messageSelector);
-            return receivedMessage != null ? receivedMessage.getText() : null;
+            Message receivedMessage = receiveMessage(messageSelector);
+            return receivedMessage != null ? getText(receivedMessage) : null;
 
         } catch (Exception e) {
             throw new MessageException(e);
@@ -259,19 +1363,102 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
 
         LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "Searching message by: {}", messageSelector);
 
-        List<Message> mensagens = new ArrayList<Message>();
+        List<Message> mensagens = receiveMessages(messageSelector, getReadQueue(), maxMsgCount, totalTimeOut)
+            .getMessages();
+        LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "{} messages encountered: {}", mensagens.size(), mensagens);
+
+        return mensagens;
+    }
+
+    /**
+     * Receives up to <i>maxMsgCount</i> messages from the queue using a single consumer. Each
+     * receive blocks only for the time left until the deadline given by <i>timeout</i>.
+     * 
+     * @param messageSelector
+     * @param queue
+     * @param maxMsgCount
+     * @param timeout
+     * @return {@link JMSReceiveResult}
+     * @throws MessageException
+     */
+    public JMSReceiveResult receiveMessages(final String messageSelector, final Queue queue, final int maxMsgCount,
+        final long timeout) throws MessageException {
+
+        if (queue == null) {
+            throw new MessageException("Queue cannot be null!");
+        }
+
+        try {
+
+            JMSReceiveResult result = this.jmsTemplate.execute(new SessionCallback<JMSReceiveResult>() {
+                @Override
+                public JMSReceiveResult doInJms(Session session) throws JMSException {
+                    return doReceiveMessages(session, messageSelector, queue, maxMsgCount, timeout);
+                }
+            }, true);
 
-        long finishTime = System.currentTimeMillis() + totalTimeOut;
-        while (mensagens.size() < maxMsgCount && System.currentTimeMillis() < finishTime) {
+            LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "{} messages received from '{}' after waiting {} ms",
+                result.getMessages().size(), queue, result.getWaitTime());
 
-            Message message = receiveMessage(messageSelector);
-            if (message != null) {
-                mensagens.add(message);
+            return result;
+
+        } catch (Exception e) {
+            JMSDestinationMetrics destinationMetrics = getDestinationMetrics(queue);
+            if (destinationMetrics != null) {
+                destinationMetrics.recordBrokerError();
             }
+            throw new MessageException(e);
         }
-        LoggerUtils.logDebug(AbstractJMSMessageImpl.class, "{} messages encountered: {}", mensagens.size(), mensagens);
+    }
 
-        return mensagens;
+    /**
+     * Drains up to <i>maxMsgCount</i> messages from a single consumer until the deadline.
+     * 
+     * @param session
+     * @param messageSelector
+     * @param queue
+     * @param maxMsgCount
+     * @param timeout
+     * @return {@link JMSReceiveResult}
+     * @throws JMSException
+     */
+    protected JMSReceiveResult doReceiveMessages(Session session, String messageSelector, Queue queue,
+        int maxMsgCount, long timeout) throws JMSException {
+
+        List<Message> messages = new ArrayList<Message>();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        MessageConsumer consumer = session.createConsumer(queue, messageSelector);
+        try {
+
+            while (messages.size() < maxMsgCount) {
+
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+
+                Message message = consumer.receive(remaining);
+                if (message == null) {
+                    break;
+                }
+                if (this.compressor != null) {
+                    this.compressor.decompress(message);
+                }
+                messages.add(message);
+            }
+
+        } finally {
+            JmsUtils.closeMessageConsumer(consumer);
+        }
+
+        long waitTime = System.nanoTime() - start;
+        JMSDestinationMetrics destinationMetrics = getDestinationMetrics(queue);
+        if (destinationMetrics != null) {
+            destinationMetrics.recordReceive(waitTime, messages);
+        }
+        return new JMSReceiveResult(messages, TimeUnit.NANOSECONDS.toMillis(waitTime));
     }
 
     /**
@@ -293,12 +1480,13 @@ public abstract class AbstractJMSMessageImpl implements JMSMessage, Initializing
 
             List<String> textMessages = new ArrayList<String>();
             for (Message response : messages) {
-                TextMessage txtMsg = (TextMessage) response;
-                textMessages.add(txtMsg.getText());
+                textMessages.add(getText(response));
             }
 
             return textMessages;
 
+        } catch (MessageException e) {
+            throw e;
         } catch (Exception e) {
             throw new MessageException(e);
         }
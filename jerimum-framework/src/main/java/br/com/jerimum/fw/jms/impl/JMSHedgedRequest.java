@@ -0,0 +1,161 @@
+package br.com.jerimum.fw.jms.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import br.com.jerimum.fw.jms.hedging.JMSHedgingPolicy;
+import br.com.jerimum.fw.logging.LoggerUtils;
+
+/**
+ * Sends a request and, if its reply is late, a duplicate of it, as set by a
+ * {@link JMSHedgingPolicy}. The first reply received completes the request and the other attempt
+ * is cancelled. The request fails only when every attempt sent failed.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSHedgedRequest {
+
+    /**
+     * Sends one attempt of the request and registers the caller waiting its reply.
+     */
+    interface Sender {
+
+        ListenableFuture<Message> send(Queue queue, long timeout) throws Exception;
+    }
+
+    private final JMSHedgingPolicy policy;
+    private final ScheduledExecutorService scheduler;
+    private final Sender sender;
+    private final Queue queue;
+    private final long timeout;
+
+    private final SettableFuture<Message> result = SettableFuture.create();
+    private final List<ListenableFuture<Message>> attempts = new CopyOnWriteArrayList<ListenableFuture<Message>>();
+    private final AtomicInteger pendingAttempts = new AtomicInteger();
+    private long startTime;
+
+    JMSHedgedRequest(JMSHedgingPolicy policy, ScheduledExecutorService scheduler, Sender sender, Queue queue,
+        long timeout) {
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.sender = sender;
+        this.queue = queue;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends the request and schedules its duplicate.
+     * 
+     * @return {@link ListenableFuture}<Message> >> The first reply received.
+     * @throws Exception if the request could not be sent.
+     */
+    ListenableFuture<Message> send() throws Exception {
+
+        this.policy.requestStarted();
+        this.startTime = System.currentTimeMillis();
+        this.result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                cancelAttempts();
+            }
+        }, MoreExecutors.directExecutor());
+
+        attempt(this.queue, this.timeout, false);
+
+        long hedgeDelay = this.policy.getHedgeDelay(this.queue);
+        if (hedgeDelay >= 0 && hedgeDelay < this.timeout && !this.result.isDone()) {
+            try {
+
+                final ScheduledFuture<?> hedgeTask = this.scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        hedge();
+                    }
+                }, hedgeDelay, TimeUnit.MILLISECONDS);
+
+                this.result.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        hedgeTask.cancel(false);
+                    }
+                }, MoreExecutors.directExecutor());
+
+            } catch (RejectedExecutionException e) {
+                LoggerUtils.logDebug(JMSHedgedRequest.class, "Hedging scheduler stopped, request not hedged");
+            }
+        }
+        return this.result;
+    }
+
+    private void hedge() {
+
+        long remaining = this.timeout - (System.currentTimeMillis() - this.startTime);
+        if (this.result.isDone() || remaining <= 0 || !this.policy.tryAcquireHedge()) {
+            return;
+        }
+
+        Queue hedgeQueue = this.policy.getAlternateQueue() != null ? this.policy.getAlternateQueue() : this.queue;
+        LoggerUtils.logDebug(JMSHedgedRequest.class, "No reply after {} ms, hedging request to '{}'...",
+            this.timeout - remaining, hedgeQueue);
+        try {
+            attempt(hedgeQueue, remaining, true);
+        } catch (Exception e) {
+            LoggerUtils.logError(JMSHedgedRequest.class, "Unable to send hedged request!", e);
+        }
+    }
+
+    private void attempt(Queue attemptQueue, long attemptTimeout, final boolean hedge) throws Exception {
+
+        this.pendingAttempts.incrementAndGet();
+        ListenableFuture<Message> reply;
+        try {
+            reply = this.sender.send(attemptQueue, attemptTimeout);
+        } catch (Exception e) {
+            this.pendingAttempts.decrementAndGet();
+            throw e;
+        }
+
+        this.attempts.add(reply);
+        if (this.result.isDone()) {
+            reply.cancel(false);
+        }
+
+        Futures.addCallback(reply, new FutureCallback<Message>() {
+            @Override
+            public void onSuccess(Message message) {
+                if (result.set(message)) {
+                    policy.requestCompleted(queue, System.currentTimeMillis() - startTime, hedge);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (pendingAttempts.decrementAndGet() == 0) {
+                    result.setException(t);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void cancelAttempts() {
+
+        for (ListenableFuture<Message> attempt : this.attempts) {
+            attempt.cancel(false);
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package br.com.jerimum.fw.jms.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.exception.MessageBatchException;
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSMessage;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+
+/**
+ * Collects the messages sent by many threads in a bounded buffer and sends them in batches
+ * through {@link JMSMessage#sendBatch(List, Queue)}. A batch is flushed when it reaches
+ * <i>batchSize</i> messages or when its first message has waited <i>lingerTime</i> milliseconds.
+ * <p>
+ * The messages whose future is cancelled before their batch is flushed are not sent. A failure
+ * of the flusher fails the futures of its batch and the flusher goes on with the next one.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSLingerSender {
+
+    private static final long IDLE_POLL_TIME = 500L;
+
+    private final JMSMessage gateway;
+    @Getter
+    private final long lingerTime;
+    @Getter
+    private final int batchSize;
+    private final BlockingQueue<PendingMessage> buffer;
+
+    private ExecutorService flusher;
+    private volatile boolean running;
+
+    /**
+     * @param gateway
+     * @param lingerTime >> Maximum time (ms) a message waits for its batch.
+     * @param batchSize >> Maximum number of messages per batch.
+     * @param bufferSize >> Maximum number of messages waiting to be sent.
+     */
+    public JMSLingerSender(JMSMessage gateway, long lingerTime, int batchSize, int bufferSize) {
+        this.gateway = gateway;
+        this.lingerTime = lingerTime;
+        this.batchSize = Math.max(1, batchSize);
+        this.buffer = new ArrayBlockingQueue<PendingMessage>(Math.max(1, bufferSize));
+    }
+
+    /**
+     * Starts the thread that flushes the buffer.
+     */
+    public synchronized void start() {
+
+        if (this.running) {
+            return;
+        }
+
+        this.running = true;
+        this.flusher = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-linger-%d").build());
+        this.flusher.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        });
+    }
+
+    /**
+     * Stops the flusher thread after sending the messages already buffered.
+     */
+    public synchronized void stop() {
+
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        this.flusher.shutdown();
+        try {
+            this.flusher.awaitTermination(this.lingerTime + IDLE_POLL_TIME, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingMessage> remaining = new ArrayList<PendingMessage>();
+        this.buffer.drainTo(remaining);
+        for (PendingMessage pending : remaining) {
+            pending.future.setException(new MessageException("Linger sender stopped!"));
+        }
+    }
+
+    /**
+     * Returns the number of messages waiting to be sent.
+     * 
+     * @return int
+     */
+    public int getBufferedMessageCount() {
+        return this.buffer.size();
+    }
+
+    /**
+     * Buffers the message. Blocks while the buffer is full.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @return {@link ListenableFuture}<Message> >> Completes when the batch of the message is
+     *         committed.
+     * @throws MessageException
+     */
+    public ListenableFuture<Message> send(JMSMessageCreator<?> messageCreator, Queue queue) throws MessageException {
+
+        if (!this.running) {
+            throw new MessageException("Linger sender is not running!");
+        }
+
+        PendingMessage pending = new PendingMessage(messageCreator, queue);
+        try {
+            this.buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException(e);
+        }
+        return pending.future;
+    }
+
+    private void flushLoop() {
+
+        while (this.running || !this.buffer.isEmpty()) {
+
+            List<PendingMessage> batch = new ArrayList<PendingMessage>(this.batchSize);
+            try {
+
+                PendingMessage first = this.buffer.poll(IDLE_POLL_TIME, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+
+                long deadline = first.createdAt + TimeUnit.MILLISECONDS.toNanos(this.lingerTime);
+                while (batch.size() < this.batchSize) {
+
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? this.buffer.poll(remaining, TimeUnit.NANOSECONDS)
+                        : this.buffer.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete(batch, new ArrayList<Message>(), new MessageException("Linger sender interrupted!"));
+                return;
+            } catch (Throwable e) {
+                LoggerUtils.logError(JMSLingerSender.class, "Unexpected failure flushing messages!", e);
+                complete(batch, new ArrayList<Message>(), e);
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+
+        Map<Queue, List<PendingMessage>> byQueue = new LinkedHashMap<Queue, List<PendingMessage>>();
+        for (PendingMessage pending : batch) {
+            if (pending.future.isCancelled()) {
+                continue;
+            }
+            List<PendingMessage> messages = byQueue.get(pending.queue);
+            if (messages == null) {
+                messages = new ArrayList<PendingMessage>();
+                byQueue.put(pending.queue, messages);
+            }
+            messages.add(pending);
+        }
+
+        for (Entry<Queue, List<PendingMessage>> entry : byQueue.entrySet()) {
+
+            List<PendingMessage> messages = entry.getValue();
+            List<JMSMessageCreator<?>> messageCreators = new ArrayList<JMSMessageCreator<?>>(messages.size());
+            for (PendingMessage pending : messages) {
+                messageCreators.add(pending.messageCreator);
+            }
+
+            try {
+
+                List<Message> sent = this.gateway.sendBatch(messageCreators, entry.getKey());
+                complete(messages, sent, null);
+
+            } catch (MessageBatchException e) {
+                complete(messages, e.getSentMessages(), e);
+            } catch (Exception e) {
+                complete(messages, new ArrayList<Message>(), e);
+            }
+        }
+
+        LoggerUtils.logTrace(JMSLingerSender.class, "{} messages flushed to {} queues", batch.size(), byQueue.size());
+    }
+
+    private void complete(List<PendingMessage> messages, List<Message> sent, Throwable failure) {
+
+        for (int i = 0; i < messages.size(); i++) {
+            if (i < sent.size()) {
+                messages.get(i).future.set(sent.get(i));
+            } else {
+                messages.get(i).future.setException(failure);
+            }
+        }
+    }
+
+    /**
+     * Message waiting in the buffer.
+     */
+    private static class PendingMessage {
+
+        private final JMSMessageCreator<?> messageCreator;
+        private final Queue queue;
+        private final long createdAt = System.nanoTime();
+        private final SettableFuture<Message> future = SettableFuture.create();
+
+        PendingMessage(JMSMessageCreator<?> messageCreator, Queue queue) {
+            this.messageCreator = messageCreator;
+            this.queue = queue;
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+package br.com.jerimum.fw.jms.impl;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+
+import org.springframework.jms.support.JmsUtils;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+
+/**
+ * Keeps one long-lived consumer on a reply queue and hands each received message to the caller
+ * waiting for its <i>JMSCorrelationID</i>. When created without a reply queue, the dispatcher
+ * consumes from a {@link TemporaryQueue} owned by its connection.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSReplyDispatcher implements MessageListener, ExceptionListener {
+
+    private final ConnectionFactory connectionFactory;
+    @Getter
+    private final boolean temporaryReplyQueue;
+    @Getter
+    private volatile Queue replyQueue;
+    @Getter
+    private final long unclaimedReplyRetention;
+
+    private final ConcurrentMap<String, SettableFuture<Message>> pendingReplies =
+        new ConcurrentHashMap<String, SettableFuture<Message>>();
+    private final ConcurrentMap<String, UnclaimedReply> unclaimedReplies =
+        new ConcurrentHashMap<String, UnclaimedReply>();
+
+    private Connection connection;
+    private Session session;
+    private MessageConsumer consumer;
+    private volatile ScheduledThreadPoolExecutor timeoutScheduler;
+    private volatile boolean running;
+
+    /**
+     * @param connectionFactory
+     * @param replyQueue
+     * @param unclaimedReplyRetention Time (ms) that a reply received before its caller registered
+     *            is kept.
+     */
+    public JMSReplyDispatcher(ConnectionFactory connectionFactory, Queue replyQueue, long unclaimedReplyRetention) {
+        this.connectionFactory = connectionFactory;
+        this.temporaryReplyQueue = replyQueue == null;
+        this.replyQueue = replyQueue;
+        this.unclaimedReplyRetention = unclaimedReplyRetention;
+    }
+
+    /**
+     * Creates a dispatcher that consumes from its own temporary queue.
+     * 
+     * @param connectionFactory
+     * @param unclaimedReplyRetention Time (ms) that a reply received before its caller registered
+     *            is kept.
+     */
+    public JMSReplyDispatcher(ConnectionFactory connectionFactory, long unclaimedReplyRetention) {
+        this(connectionFactory, null, unclaimedReplyRetention);
+    }
+
+    /**
+     * Opens the connection and the consumer of the reply queue.
+     * 
+     * @throws JMSException
+     */
+    public synchronized void start() throws JMSException {
+
+        if (this.running) {
+            return;
+        }
+
+        if (this.timeoutScheduler == null) {
+            this.timeoutScheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-reply-timeout-%d").build());
+            this.timeoutScheduler.setRemoveOnCancelPolicy(true);
+        }
+
+        try {
+
+            this.connection = this.connectionFactory.createConnection();
+            this.connection.setExceptionListener(this);
+            this.session = this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            if (this.temporaryReplyQueue) {
+                this.replyQueue = this.session.createTemporaryQueue();
+            }
+            this.consumer = this.session.createConsumer(this.replyQueue);
+            this.consumer.setMessageListener(this);
+            this.connection.start();
+            this.running = true;
+
+            LoggerUtils.logDebug(JMSReplyDispatcher.class, "Reply consumer started on queue '{}'", this.replyQueue);
+
+        } catch (JMSException e) {
+            closeResources();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the consumer and fails every caller still waiting for a reply.
+     */
+    public synchronized void stop() {
+
+        this.running = false;
+        closeResources();
+        failPendingReplies(new MessageException("Reply consumer stopped!"));
+        this.unclaimedReplies.clear();
+
+        if (this.timeoutScheduler != null) {
+            this.timeoutScheduler.shutdownNow();
+            this.timeoutScheduler = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Returns the queue where the replies must be sent, starting the consumer if needed. A new
+     * temporary queue is created whenever the connection is reopened.
+     * 
+     * @return {@link Queue}
+     * @throws MessageException
+     */
+    public Queue getActiveReplyQueue() throws MessageException {
+
+        ensureRunning();
+        return this.replyQueue;
+    }
+
+    /**
+     * Returns the number of callers waiting for a reply.
+     * 
+     * @return int
+     */
+    public int getPendingReplyCount() {
+        return this.pendingReplies.size();
+    }
+
+    /**
+     * Registers a caller waiting for the reply with the given correlation id. The reply may
+     * already have arrived, in which case the returned future is already done.
+     * 
+     * @param correlationID
+     * @return {@link SettableFuture}<Message>
+     * @throws MessageException
+     */
+    public SettableFuture<Message> register(String correlationID) throws MessageException {
+
+        ensureRunning();
+
+        SettableFuture<Message> future = SettableFuture.create();
+        SettableFuture<Message> existing = this.pendingReplies.putIfAbsent(correlationID, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        UnclaimedReply unclaimed = this.unclaimedReplies.remove(correlationID);
+        if (unclaimed != null) {
+            this.pendingReplies.remove(correlationID, future);
+            future.set(unclaimed.message);
+        }
+        return future;
+    }
+
+    /**
+     * Registers a caller waiting for the reply with the given correlation id. The returned future
+     * fails with a {@link TimeoutException} if no reply arrives within the timeout.
+     * 
+     * @param correlationID
+     * @param timeout
+     * @return {@link SettableFuture}<Message>
+     * @throws MessageException
+     */
+    public SettableFuture<Message> register(final String correlationID, final long timeout)
+        throws MessageException {
+
+        final SettableFuture<Message> future = register(correlationID);
+        if (future.isDone()) {
+            return future;
+        }
+
+        ScheduledThreadPoolExecutor scheduler = this.timeoutScheduler;
+        try {
+
+            if (scheduler == null) {
+                throw new RejectedExecutionException("Timeout scheduler not available");
+            }
+
+            final ScheduledFuture<?> timeoutTask = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pendingReplies.remove(correlationID, future);
+                    future.setException(new TimeoutException(
+                        String.format("No reply received for '%s' after %d ms", correlationID, timeout)));
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    timeoutTask.cancel(false);
+                    pendingReplies.remove(correlationID, future);
+                }
+            }, MoreExecutors.directExecutor());
+
+        } catch (RejectedExecutionException e) {
+            this.pendingReplies.remove(correlationID, future);
+            future.setException(new MessageException("Reply consumer stopped!", e));
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the reply with the given correlation id up to the timeout.
+     * 
+     * @param correlationID
+     * @param timeout
+     * @return {@link Message} or <code>null</code> if the timeout was reached.
+     * @throws MessageException
+     */
+    public Message receive(String correlationID, long timeout) throws MessageException {
+
+        SettableFuture<Message> future = register(correlationID);
+        try {
+
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+
+        } catch (TimeoutException e) {
+            LoggerUtils.logDebug(JMSReplyDispatcher.class, "No reply received for '{}' after {} ms", correlationID,
+                timeout);
+            return null;
+        } catch (ExecutionException e) {
+            throw new MessageException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException(e);
+        } finally {
+            this.pendingReplies.remove(correlationID, future);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+
+            String correlationID = message.getJMSCorrelationID();
+            if (correlationID == null) {
+                LoggerUtils.logWarning(JMSReplyDispatcher.class, "Reply without JMSCorrelationID discarded: {}",
+                    message.getJMSMessageID());
+                return;
+            }
+
+            SettableFuture<Message> future = this.pendingReplies.remove(correlationID);
+            if (future != null) {
+                future.set(message);
+                return;
+            }
+
+            /*
+             * the caller may not be registered yet, keeps the reply for a while
+             */
+            UnclaimedReply unclaimed = new UnclaimedReply(message);
+            this.unclaimedReplies.put(correlationID, unclaimed);
+            future = this.pendingReplies.get(correlationID);
+            if (future != null && this.unclaimedReplies.remove(correlationID, unclaimed)) {
+                this.pendingReplies.remove(correlationID, future);
+                future.set(message);
+            }
+            purgeUnclaimedReplies();
+
+        } catch (JMSException e) {
+            LoggerUtils.logError(JMSReplyDispatcher.class, "Unable to dispatch reply message!", e);
+        }
+    }
+
+    @Override
+    public void onException(JMSException exception) {
+
+        LoggerUtils.logError(JMSReplyDispatcher.class, "Reply consumer connection failure!", exception);
+        synchronized (this) {
+            this.running = false;
+            closeResources();
+        }
+        failPendingReplies(new MessageException("Reply consumer connection lost!", exception));
+    }
+
+    private void ensureRunning() throws MessageException {
+
+        if (!this.running) {
+            try {
+                start();
+            } catch (JMSException e) {
+                throw new MessageException("Unable to start the reply consumer!", e);
+            }
+        }
+    }
+
+    private void failPendingReplies(MessageException cause) {
+
+        Iterator<Entry<String, SettableFuture<Message>>> it = this.pendingReplies.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, SettableFuture<Message>> entry = it.next();
+            it.remove();
+            entry.getValue().setException(cause);
+        }
+    }
+
+    private void purgeUnclaimedReplies() {
+
+        long limit = System.currentTimeMillis() - this.unclaimedReplyRetention;
+        Iterator<UnclaimedReply> it = this.unclaimedReplies.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().receivedAt < limit) {
+                it.remove();
+            }
+        }
+    }
+
+    private void closeResources() {
+
+        JmsUtils.closeMessageConsumer(this.consumer);
+        JmsUtils.closeSession(this.session);
+        JmsUtils.closeConnection(this.connection, true);
+        this.consumer = null;
+        this.session = null;
+        this.connection = null;
+    }
+
+    /**
+     * Reply received before its caller was registered.
+     */
+    private static class UnclaimedReply {
+
+        private final Message message;
+        private final long receivedAt;
+
+        UnclaimedReply(Message message) {
+            this.message = message;
+            this.receivedAt = System.currentTimeMillis();
+        }
+    }
+
+}
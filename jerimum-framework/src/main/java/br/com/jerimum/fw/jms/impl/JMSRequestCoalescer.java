@@ -0,0 +1,111 @@
+package br.com.jerimum.fw.jms.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
+import javax.jms.Queue;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Keeps the text requests in flight, keyed by destination and payload, so identical requests
+ * made while the first one is waiting for its reply share that reply instead of reaching the
+ * broker again.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSRequestCoalescer {
+
+    private final ConcurrentMap<String, SettableFuture<String>> inFlightRequests =
+        new ConcurrentHashMap<String, SettableFuture<String>>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Returns the key of the request.
+     * 
+     * @param queue
+     * @param payload
+     * @return {@link String}
+     * @throws JMSException
+     */
+    static String key(Queue queue, String payload) throws JMSException {
+        return queue.getQueueName() + '\n' + payload;
+    }
+
+    /**
+     * Returns the identical request in flight or, when there is none, registers the given request
+     * as in flight until it is done and returns <code>null</code>. In that case the caller must
+     * send the request and complete it.
+     * 
+     * @param key
+     * @param request
+     * @return {@link SettableFuture}<String>
+     */
+    SettableFuture<String> join(final String key, final SettableFuture<String> request) {
+
+        SettableFuture<String> inFlight = this.inFlightRequests.putIfAbsent(key, request);
+        if (inFlight != null) {
+            this.coalescedCount.incrementAndGet();
+            return inFlight;
+        }
+
+        request.addListener(new Runnable() {
+            @Override
+            public void run() {
+                inFlightRequests.remove(key, request);
+            }
+        }, MoreExecutors.directExecutor());
+        return null;
+    }
+
+    /**
+     * Completes the request with the result of the reply.
+     * 
+     * @param request
+     * @param reply
+     */
+    static void complete(final SettableFuture<String> request, ListenableFuture<String> reply) {
+
+        Futures.addCallback(reply, new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                request.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                request.setException(t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Returns a future completed with the request, so a caller cancelling it does not cancel the
+     * request shared with the other callers.
+     * 
+     * @param request
+     * @return {@link ListenableFuture}<String>
+     */
+    static ListenableFuture<String> share(ListenableFuture<String> request) {
+
+        SettableFuture<String> caller = SettableFuture.create();
+        complete(caller, request);
+        return caller;
+    }
+
+    /**
+     * Number of requests that shared the reply of an identical request.
+     * 
+     * @return long
+     */
+    long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+}
@@ -0,0 +1,44 @@
+package br.com.jerimum.fw.jms.impl;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.jms.JMSMessageCreatorDecorator;
+
+/**
+ * Decorates a {@link JMSMessageCreator} of a request, setting the <i>JMSReplyTo</i> and the
+ * {@link JMSHeaders#DEADLINE} of the created message when they are given.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSRequestMessageCreator extends JMSMessageCreatorDecorator {
+
+    private final Destination replyTo;
+    private final long deadline;
+
+    /**
+     * @param messageCreator
+     * @param replyTo >> <code>null</code> to keep the <i>JMSReplyTo</i> of the message.
+     * @param deadline >> Time (ms since epoch) the requester stops waiting, or 0 if none.
+     */
+    JMSRequestMessageCreator(JMSMessageCreator<?> messageCreator, Destination replyTo, long deadline) {
+        super(messageCreator);
+        this.replyTo = replyTo;
+        this.deadline = deadline;
+    }
+
+    @Override
+    protected void decorate(Message message) throws JMSException {
+
+        if (this.replyTo != null) {
+            message.setJMSReplyTo(this.replyTo);
+        }
+        if (this.deadline > 0) {
+            message.setLongProperty(JMSHeaders.DEADLINE, this.deadline);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package br.com.jerimum.fw.jms.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import br.com.jerimum.fw.jms.JMSScatterGatherResult;
+
+/**
+ * Collects the futures of the responses of a scatter-gather call. The result is set as soon as
+ * all the futures are done, the quorum is reached or the quorum can no longer be reached; the
+ * futures still pending are then cancelled.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+class JMSScatterGather {
+
+    private final Map<Queue, ListenableFuture<Message>> pendingReplies;
+    private final int quorum;
+    private final long startTime;
+
+    private final Map<Queue, Message> replies = new LinkedHashMap<Queue, Message>();
+    private final Map<Queue, Throwable> failures = new LinkedHashMap<Queue, Throwable>();
+    private final SettableFuture<JMSScatterGatherResult> result = SettableFuture.create();
+
+    /**
+     * @param pendingReplies >> Future response of each queue.
+     * @param quorum
+     * @param startTime >> Time (ms since epoch) the requests started to be sent.
+     */
+    JMSScatterGather(Map<Queue, ListenableFuture<Message>> pendingReplies, int quorum, long startTime) {
+        this.pendingReplies = pendingReplies;
+        this.quorum = quorum;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Starts collecting the responses.
+     * 
+     * @return {@link ListenableFuture}<JMSScatterGatherResult>
+     */
+    ListenableFuture<JMSScatterGatherResult> gather() {
+
+        if (this.pendingReplies.isEmpty()) {
+            complete();
+        }
+
+        for (final Entry<Queue, ListenableFuture<Message>> pendingReply : this.pendingReplies.entrySet()) {
+            Futures.addCallback(pendingReply.getValue(), new FutureCallback<Message>() {
+                @Override
+                public void onSuccess(Message reply) {
+                    done(pendingReply.getKey(), reply, null);
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    done(pendingReply.getKey(), null, failure);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return this.result;
+    }
+
+    private void done(Queue queue, Message reply, Throwable failure) {
+
+        synchronized (this) {
+
+            if (this.result.isDone()) {
+                return;
+            }
+
+            if (failure == null) {
+                this.replies.put(queue, reply);
+            } else {
+                this.failures.put(queue, failure);
+            }
+
+            int remaining = this.pendingReplies.size() - this.replies.size() - this.failures.size();
+            if (this.replies.size() < this.quorum && remaining > 0 && this.replies.size() + remaining >= this.quorum) {
+                return;
+            }
+            complete();
+        }
+
+        for (ListenableFuture<Message> pendingReply : this.pendingReplies.values()) {
+            pendingReply.cancel(false);
+        }
+    }
+
+    private void complete() {
+
+        this.result.set(new JMSScatterGatherResult(
+            Collections.unmodifiableMap(new LinkedHashMap<Queue, Message>(this.replies)),
+            Collections.unmodifiableMap(new LinkedHashMap<Queue, Throwable>(this.failures)),
+            this.pendingReplies.size(), this.quorum, System.currentTimeMillis() - this.startTime));
+    }
+
+}
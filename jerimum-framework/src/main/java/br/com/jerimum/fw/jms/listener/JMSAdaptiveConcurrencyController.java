@@ -0,0 +1,389 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jms.core.BrowserCallback;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Adjusts the number of consumers of a {@link DefaultMessageListenerContainer} at runtime. On
+ * each sample the controller browses the queue depth and reads the processing latency and error
+ * rate recorded by the listener since the previous sample:
+ * <ul>
+ * <li>errors above <i>maxErrorRate</i> or latency above <i>targetLatency</i> remove one consumer,
+ * since the downstream systems are already saturated;</li>
+ * <li>a backlog above <i>backlogPerConsumer</i> messages per consumer adds one consumer;</li>
+ * <li>an empty queue removes one consumer.</li>
+ * </ul>
+ * The number of consumers is always kept between <i>minConsumers</i> and <i>maxConsumers</i>.
+ * The listener of the container is wrapped on {@link #start()} to record its latency and errors.
+ * The wrapper keeps the interface the container invokes: {@link JerimumBatchMessageListener} on a
+ * {@link JMSBatchMessageListenerContainer}, otherwise {@link SessionAwareMessageListener} or
+ * {@link MessageListener}, in the same order of precedence as the container.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSAdaptiveConcurrencyController implements InitializingBean, DisposableBean {
+
+    public static final long DEFAULT_SAMPLE_INTERVAL = 5000L;
+    public static final long DEFAULT_TARGET_LATENCY = 1000L;
+    public static final double DEFAULT_MAX_ERROR_RATE = 0.1;
+    public static final int DEFAULT_BACKLOG_PER_CONSUMER = 100;
+    public static final int DEFAULT_MAX_BROWSE_DEPTH = 10000;
+
+    @Getter
+    private final DefaultMessageListenerContainer container;
+    @Getter
+    private final Queue queue;
+    private final JmsTemplate browserTemplate;
+
+    @Getter
+    @Setter
+    private int minConsumers = 1;
+    @Getter
+    @Setter
+    private int maxConsumers = 1;
+    @Getter
+    @Setter
+    private long sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    @Getter
+    @Setter
+    private long targetLatency = DEFAULT_TARGET_LATENCY;
+    @Getter
+    @Setter
+    private double maxErrorRate = DEFAULT_MAX_ERROR_RATE;
+    @Getter
+    @Setter
+    private int backlogPerConsumer = DEFAULT_BACKLOG_PER_CONSUMER;
+
+    /**
+     * Maximum number of messages counted by the queue browser on each sample.
+     */
+    @Getter
+    @Setter
+    private int maxBrowseDepth = DEFAULT_MAX_BROWSE_DEPTH;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong processingTime = new AtomicLong();
+    private final AtomicLong increases = new AtomicLong();
+    private final AtomicLong decreases = new AtomicLong();
+
+    private volatile JMSConcurrencyStatistics statistics;
+    private ScheduledExecutorService sampler;
+
+    public JMSAdaptiveConcurrencyController(DefaultMessageListenerContainer container, Queue queue) {
+        this.container = container;
+        this.queue = queue;
+        this.browserTemplate = new JmsTemplate(container.getConnectionFactory());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        start();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * Wraps the listener of the container and starts sampling.
+     */
+    public synchronized void start() {
+
+        if (this.sampler != null) {
+            return;
+        }
+
+        Object listener = this.container.getMessageListener();
+        if (!(listener instanceof MonitoredMessageListener || listener instanceof MonitoredSessionAwareMessageListener
+            || listener instanceof MonitoredBatchMessageListener)) {
+            this.container.setMessageListener(monitor(listener));
+        }
+
+        this.sampler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-concurrency-%d").build());
+        this.sampler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                adjust();
+            }
+        }, this.sampleInterval, this.sampleInterval, TimeUnit.MILLISECONDS);
+
+        LoggerUtils.logDebug(JMSAdaptiveConcurrencyController.class,
+            "Adaptive concurrency started for queue '{}' between {} and {} consumers", this.queue,
+            this.minConsumers, this.maxConsumers);
+    }
+
+    /**
+     * Stops sampling. The container keeps its current number of consumers.
+     */
+    public synchronized void stop() {
+
+        if (this.sampler != null) {
+            this.sampler.shutdownNow();
+            this.sampler = null;
+        }
+    }
+
+    /**
+     * Returns the last sample, or <code>null</code> if no sample was taken yet.
+     * 
+     * @return {@link JMSConcurrencyStatistics}
+     */
+    public JMSConcurrencyStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Wraps the listener recording its processing time and failures. The wrapper implements the
+     * interface of the listener invoked by the container.
+     * 
+     * @param listener {@link MessageListener}, {@link SessionAwareMessageListener} or
+     *        {@link JerimumBatchMessageListener} (on a {@link JMSBatchMessageListenerContainer})
+     * @return the monitored listener
+     */
+    @SuppressWarnings("unchecked")
+    public Object monitor(Object listener) {
+
+        if (listener instanceof JerimumBatchMessageListener
+            && this.container instanceof JMSBatchMessageListenerContainer) {
+            return new MonitoredBatchMessageListener((JerimumBatchMessageListener) listener);
+        }
+
+        if (listener instanceof SessionAwareMessageListener) {
+            return new MonitoredSessionAwareMessageListener((SessionAwareMessageListener<Message>) listener);
+        }
+
+        if (listener instanceof MessageListener) {
+            return new MonitoredMessageListener((MessageListener) listener);
+        }
+
+        throw new IllegalArgumentException(
+            "Unsupported message listener for " + this.container.getClass().getSimpleName() + ": " + listener);
+    }
+
+    /**
+     * Takes a sample and adjusts the number of consumers of the container.
+     * 
+     * @return {@link JMSConcurrencyDecision}
+     */
+    public JMSConcurrencyDecision adjust() {
+
+        try {
+
+            int depth = sampleQueueDepth();
+            long messages = this.processed.getAndSet(0);
+            long errors = this.failed.getAndSet(0);
+            long time = this.processingTime.getAndSet(0);
+
+            double averageLatency = messages > 0 ? TimeUnit.NANOSECONDS.toMillis(time) / (double) messages : 0;
+            double errorRate = messages > 0 ? errors / (double) messages : 0;
+
+            int current = this.container.getConcurrentConsumers();
+            JMSConcurrencyDecision decision = decide(current, depth, averageLatency, errorRate);
+
+            int target = current;
+            if (decision == JMSConcurrencyDecision.INCREASE_BACKLOG) {
+                target = current + 1;
+                this.increases.incrementAndGet();
+            } else if (decision != JMSConcurrencyDecision.KEEP) {
+                target = current - 1;
+                this.decreases.incrementAndGet();
+            }
+
+            if (target != current) {
+                resize(target);
+                LoggerUtils.logDebug(JMSAdaptiveConcurrencyController.class,
+                    "Consumers of queue '{}' changed from {} to {} ({} - depth: {}, latency: {} ms, error rate: {})",
+                    this.queue, current, target, decision, depth, averageLatency, errorRate);
+            }
+
+            this.statistics = new JMSConcurrencyStatistics(target, this.container.getActiveConsumerCount(), depth,
+                messages, averageLatency, errorRate, decision, this.increases.get(), this.decreases.get());
+            return decision;
+
+        } catch (RuntimeException e) {
+            LoggerUtils.logError(JMSAdaptiveConcurrencyController.class, "Unable to adjust the consumers!", e);
+            return JMSConcurrencyDecision.KEEP;
+        }
+    }
+
+    /**
+     * Chooses the next step for the current sample.
+     * 
+     * @param current
+     * @param depth
+     * @param averageLatency
+     * @param errorRate
+     * @return {@link JMSConcurrencyDecision}
+     */
+    protected JMSConcurrencyDecision decide(int current, int depth, double averageLatency, double errorRate) {
+
+        if (current > this.minConsumers) {
+
+            if (errorRate > this.maxErrorRate) {
+                return JMSConcurrencyDecision.DECREASE_ERRORS;
+            }
+
+            if (this.targetLatency > 0 && averageLatency > this.targetLatency) {
+                return JMSConcurrencyDecision.DECREASE_LATENCY;
+            }
+        }
+
+        boolean healthy = errorRate <= this.maxErrorRate
+            && (this.targetLatency <= 0 || averageLatency <= this.targetLatency);
+        if (healthy && current < this.maxConsumers && depth > (long) this.backlogPerConsumer * current) {
+            return JMSConcurrencyDecision.INCREASE_BACKLOG;
+        }
+
+        if (depth == 0 && current > this.minConsumers) {
+            return JMSConcurrencyDecision.DECREASE_IDLE;
+        }
+
+        return JMSConcurrencyDecision.KEEP;
+    }
+
+    /**
+     * Counts the messages waiting in the queue, up to <i>maxBrowseDepth</i>.
+     * 
+     * @return int
+     */
+    protected int sampleQueueDepth() {
+
+        return this.browserTemplate.browse(this.queue, new BrowserCallback<Integer>() {
+            @Override
+            public Integer doInJms(Session session, QueueBrowser browser) throws JMSException {
+
+                int depth = 0;
+                Enumeration<?> messages = browser.getEnumeration();
+                while (depth < maxBrowseDepth && messages.hasMoreElements()) {
+                    messages.nextElement();
+                    depth++;
+                }
+                return depth;
+            }
+        });
+    }
+
+    private void resize(int consumers) {
+
+        int target = Math.max(this.minConsumers, Math.min(this.maxConsumers, consumers));
+        if (target > this.container.getConcurrentConsumers()) {
+            this.container.setMaxConcurrentConsumers(target);
+            this.container.setConcurrentConsumers(target);
+        } else {
+            this.container.setConcurrentConsumers(target);
+            this.container.setMaxConcurrentConsumers(target);
+        }
+    }
+
+    private void record(long start, int messages, boolean success) {
+
+        this.processingTime.addAndGet(System.nanoTime() - start);
+        this.processed.addAndGet(messages);
+        if (!success) {
+            this.failed.addAndGet(messages);
+        }
+    }
+
+    /**
+     * Records the processing time and the failures of a {@link MessageListener}.
+     */
+    private class MonitoredMessageListener implements MessageListener {
+
+        private final MessageListener target;
+
+        MonitoredMessageListener(MessageListener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onMessage(Message message) {
+
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                this.target.onMessage(message);
+                success = true;
+            } finally {
+                record(start, 1, success);
+            }
+        }
+    }
+
+    /**
+     * Records the processing time and the failures of a {@link SessionAwareMessageListener}.
+     */
+    private class MonitoredSessionAwareMessageListener implements SessionAwareMessageListener<Message> {
+
+        private final SessionAwareMessageListener<Message> target;
+
+        MonitoredSessionAwareMessageListener(SessionAwareMessageListener<Message> target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onMessage(Message message, Session session) throws JMSException {
+
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                this.target.onMessage(message, session);
+                success = true;
+            } finally {
+                record(start, 1, success);
+            }
+        }
+    }
+
+    /**
+     * Records the processing time and the failures of a {@link JerimumBatchMessageListener}.
+     */
+    private class MonitoredBatchMessageListener implements JerimumBatchMessageListener {
+
+        private final JerimumBatchMessageListener target;
+
+        MonitoredBatchMessageListener(JerimumBatchMessageListener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onMessages(List<Message> messages) throws Exception {
+
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                this.target.onMessages(messages);
+                success = true;
+            } finally {
+                record(start, messages.size(), success);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+
+import org.springframework.jms.connection.JmsResourceHolder;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Message listener container that delivers up to <i>batchSize</i> messages per call to a
+ * {@link JerimumBatchMessageListener}. After the first message arrives, the container keeps
+ * receiving from the same consumer for at most <i>batchTimeout</i> milliseconds and then commits
+ * (or acknowledges) the whole batch at once.
+ * <p>
+ * The session is transacted by default. With <i>CLIENT_ACKNOWLEDGE</i> the batch is acknowledged
+ * through its last message. Plain {@link javax.jms.MessageListener}s are still invoked one
+ * message at a time.
+ * <p>
+ * With <i>exposeListenerSession</i> (the default) the session of the batch is exposed to the
+ * {@link org.springframework.jms.core.JmsTemplate}s built on the same connection factory while the
+ * listener runs, so the messages they send are committed or rolled back along with the batch.
+ * <p>
+ * With <i>priorityDispatchEnabled</i> the batch is closed as soon as a message with priority of at
+ * least <i>priorityThreshold</i> arrives, instead of waiting for more messages, and its messages
+ * are delivered highest priority first, keeping the order of the messages of the same priority.
+ * The broker must also dispatch by priority (e.g. ActiveMQ <i>prioritizedMessages</i>) for the
+ * urgent messages to overtake the ones already queued.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSBatchMessageListenerContainer extends DefaultMessageListenerContainer {
+
+    public static final int DEFAULT_BATCH_SIZE = 10;
+    public static final long DEFAULT_BATCH_TIMEOUT = 100L;
+    public static final int DEFAULT_PRIORITY_THRESHOLD = 7;
+
+    private static final Comparator<Message> PRIORITY_ORDER = new Comparator<Message>() {
+        @Override
+        public int compare(Message m1, Message m2) {
+            return priorityOf(m2) - priorityOf(m1);
+        }
+    };
+
+    @Getter
+    @Setter
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    @Getter
+    @Setter
+    private long batchTimeout = DEFAULT_BATCH_TIMEOUT;
+    @Getter
+    @Setter
+    private boolean priorityDispatchEnabled;
+    @Getter
+    @Setter
+    private int priorityThreshold = DEFAULT_PRIORITY_THRESHOLD;
+
+    public JMSBatchMessageListenerContainer() {
+        setSessionTransacted(true);
+    }
+
+    @Override
+    protected void checkMessageListener(Object messageListener) {
+
+        if (!(messageListener instanceof JerimumBatchMessageListener)) {
+            super.checkMessageListener(messageListener);
+        }
+    }
+
+    @Override
+    protected void validateConfiguration() {
+
+        super.validateConfiguration();
+        if (getMessageListener() instanceof JerimumBatchMessageListener) {
+
+            if (getTransactionManager() != null) {
+                throw new IllegalArgumentException(
+                    "JMSBatchMessageListenerContainer does not support an external transaction manager");
+            }
+
+            if (getCacheLevel() < CACHE_CONSUMER) {
+                throw new IllegalArgumentException("JMSBatchMessageListenerContainer requires CACHE_CONSUMER");
+            }
+        }
+    }
+
+    @Override
+    protected boolean doReceiveAndExecute(Object invoker, Session session, MessageConsumer consumer,
+        TransactionStatus status) throws JMSException {
+
+        if (!(getMessageListener() instanceof JerimumBatchMessageListener)) {
+            return super.doReceiveAndExecute(invoker, session, consumer, status);
+        }
+
+        if (session == null || consumer == null) {
+            throw new IllegalStateException("No cached session or consumer available for the batch");
+        }
+
+        List<Message> messages = receiveBatch(consumer);
+        if (messages.isEmpty()) {
+            noMessageReceived(invoker, session);
+            return false;
+        }
+
+        messageReceived(invoker, session);
+        LoggerUtils.logTrace(JMSBatchMessageListenerContainer.class, "{} messages received from '{}'",
+            messages.size(), getDestinationDescription());
+
+        if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+            LoggerUtils.logWarning(JMSBatchMessageListenerContainer.class,
+                "Rejecting {} messages because the listener container has been stopped", messages.size());
+            rollbackIfNecessary(session);
+            return true;
+        }
+
+        executeBatchListener(session, messages);
+        return true;
+    }
+
+    /**
+     * Receives the first message waiting up to <i>receiveTimeout</i> and the next ones until the
+     * batch is full. After <i>batchTimeout</i> milliseconds only the messages already available
+     * are added. With <i>priorityDispatchEnabled</i> an urgent message closes the batch and the
+     * batch is sorted by priority.
+     * 
+     * @param consumer
+     * @return {@link List}<Message>
+     * @throws JMSException
+     */
+    protected List<Message> receiveBatch(MessageConsumer consumer) throws JMSException {
+
+        Message first = receiveMessage(consumer);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+
+        int maxMessages = Math.max(1, this.batchSize);
+        List<Message> messages = new ArrayList<Message>(maxMessages);
+        messages.add(first);
+
+        boolean urgent = isUrgent(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.batchTimeout);
+        while (messages.size() < maxMessages && !urgent) {
+
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            Message message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            urgent = isUrgent(message);
+        }
+
+        if (this.priorityDispatchEnabled && messages.size() > 1) {
+            Collections.sort(messages, PRIORITY_ORDER);
+        }
+        return messages;
+    }
+
+    private boolean isUrgent(Message message) {
+        return this.priorityDispatchEnabled && priorityOf(message) >= this.priorityThreshold;
+    }
+
+    /**
+     * Invokes the batch listener with the session exposed to the templates of the connection
+     * factory. The session is unbound before the batch is committed or rolled back.
+     */
+    private void invokeBatchListener(Session session, List<Message> messages) throws Exception {
+
+        boolean exposeSession = isExposeListenerSession()
+            && !TransactionSynchronizationManager.hasResource(getConnectionFactory());
+        if (exposeSession) {
+            TransactionSynchronizationManager.bindResource(getConnectionFactory(), new JmsResourceHolder(session));
+        }
+
+        try {
+            ((JerimumBatchMessageListener) getMessageListener()).onMessages(Collections.unmodifiableList(messages));
+        } finally {
+            if (exposeSession) {
+                TransactionSynchronizationManager.unbindResource(getConnectionFactory());
+            }
+        }
+    }
+
+    private static int priorityOf(Message message) {
+
+        try {
+            return message.getJMSPriority();
+        } catch (JMSException e) {
+            return Message.DEFAULT_PRIORITY;
+        }
+    }
+
+    /**
+     * Invokes the batch listener and commits the batch, or rolls it back if the listener fails.
+     * 
+     * @param session
+     * @param messages
+     * @throws JMSException
+     */
+    protected void executeBatchListener(Session session, List<Message> messages) throws JMSException {
+
+        try {
+
+            invokeBatchListener(session, messages);
+
+        } catch (Exception e) {
+            rollbackOnExceptionIfNecessary(session, e);
+            handleListenerException(e);
+            return;
+        } catch (Error e) {
+            rollbackOnExceptionIfNecessary(session, e);
+            throw e;
+        }
+
+        commitIfNecessary(session, messages.get(messages.size() - 1));
+    }
+
+}
@@ -0,0 +1,122 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.TextMessage;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.claimcheck.JMSClaimCheck;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+
+/**
+ * Listener decorator that resolves the payloads offloaded by a {@link JMSClaimCheck} before the
+ * messages reach the target listener, so the target reads the original text.
+ * <p>
+ * The payload is released from the store once the target processes the message. When the target
+ * fails, the text is cleared again so a retry copy of the message carries only the reference and
+ * the payload is kept for the next attempt. To keep the retry copies small, this decorator should
+ * be the innermost one.
+ * <p>
+ * The target may be a {@link MessageListener} or a {@link JerimumBatchMessageListener}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSClaimCheckMessageListener implements MessageListener, JerimumBatchMessageListener {
+
+    @Getter
+    private final Object target;
+    @Getter
+    private final JMSClaimCheck claimCheck;
+
+    /**
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     * @param claimCheck
+     */
+    public JMSClaimCheckMessageListener(Object target, JMSClaimCheck claimCheck) {
+
+        if (!(target instanceof MessageListener) && !(target instanceof JerimumBatchMessageListener)) {
+            throw new IllegalArgumentException(
+                "Target must implement MessageListener or JerimumBatchMessageListener: " + target);
+        }
+        this.target = target;
+        this.claimCheck = claimCheck;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+            onMessages(Collections.singletonList(message));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to process message!", e);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        for (Message message : messages) {
+            resolve(message);
+        }
+
+        boolean success = false;
+        try {
+
+            if (this.target instanceof JerimumBatchMessageListener) {
+                ((JerimumBatchMessageListener) this.target).onMessages(messages);
+            } else {
+                for (Message message : messages) {
+                    ((MessageListener) this.target).onMessage(message);
+                }
+            }
+            success = true;
+
+        } finally {
+            for (Message message : messages) {
+                if (success) {
+                    release(message);
+                } else {
+                    restore(message);
+                }
+            }
+        }
+    }
+
+    private void resolve(Message message) throws JMSException, MessageException {
+
+        if (JMSClaimCheck.isClaimCheck(message) && message instanceof TextMessage) {
+            String text = this.claimCheck.getText(message);
+            message.clearBody();
+            ((TextMessage) message).setText(text);
+        }
+    }
+
+    private void release(Message message) {
+
+        try {
+            this.claimCheck.release(message);
+        } catch (MessageException e) {
+            LoggerUtils.logWarning(JMSClaimCheckMessageListener.class, "Unable to release message payload: {}",
+                e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+    }
+
+    private void restore(Message message) {
+
+        try {
+            if (JMSClaimCheck.isClaimCheck(message)) {
+                message.clearBody();
+            }
+        } catch (JMSException e) {
+            LoggerUtils.logError(JMSClaimCheckMessageListener.class, "Unable to clear message payload!", e);
+        }
+    }
+
+}
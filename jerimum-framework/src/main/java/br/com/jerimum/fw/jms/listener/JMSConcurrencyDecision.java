@@ -0,0 +1,35 @@
+package br.com.jerimum.fw.jms.listener;
+
+/**
+ * Decisions taken by the {@link JMSAdaptiveConcurrencyController} on each sample.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public enum JMSConcurrencyDecision {
+
+    /**
+     * The number of consumers was not changed.
+     */
+    KEEP,
+
+    /**
+     * One consumer was added because the backlog per consumer is above the threshold.
+     */
+    INCREASE_BACKLOG,
+
+    /**
+     * One consumer was removed because the average processing latency is above the target.
+     */
+    DECREASE_LATENCY,
+
+    /**
+     * One consumer was removed because the listener error rate is above the limit.
+     */
+    DECREASE_ERRORS,
+
+    /**
+     * One consumer was removed because the queue is empty.
+     */
+    DECREASE_IDLE
+
+}
@@ -0,0 +1,31 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of the last sample taken by the {@link JMSAdaptiveConcurrencyController}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class JMSConcurrencyStatistics implements Serializable {
+
+    private static final long serialVersionUID = 5188234675027150219L;
+
+    private final int consumers;
+    private final int activeConsumers;
+    private final int queueDepth;
+    private final long processedMessages;
+    private final double averageLatency;
+    private final double errorRate;
+    private final JMSConcurrencyDecision lastDecision;
+    private final long increases;
+    private final long decreases;
+
+}
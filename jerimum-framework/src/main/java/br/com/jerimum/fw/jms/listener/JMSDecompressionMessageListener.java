@@ -0,0 +1,85 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import br.com.jerimum.fw.jms.compression.JMSCompressor;
+import lombok.Getter;
+
+/**
+ * Listener decorator that decompresses the bodies compressed by a {@link JMSCompressor} before the
+ * messages reach the target listener, so the target reads the original body.
+ * <p>
+ * The target may be a {@link MessageListener} or a {@link JerimumBatchMessageListener}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSDecompressionMessageListener implements MessageListener, JerimumBatchMessageListener {
+
+    @Getter
+    private final Object target;
+    @Getter
+    private final JMSCompressor compressor;
+
+    /**
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     * @param compressor
+     */
+    public JMSDecompressionMessageListener(Object target, JMSCompressor compressor) {
+
+        if (!(target instanceof MessageListener) && !(target instanceof JerimumBatchMessageListener)) {
+            throw new IllegalArgumentException(
+                "Target must implement MessageListener or JerimumBatchMessageListener: " + target);
+        }
+        this.target = target;
+        this.compressor = compressor;
+    }
+
+    /**
+     * Creates the decorator with a {@link JMSCompressor} of default settings.
+     * 
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     */
+    public JMSDecompressionMessageListener(Object target) {
+        this(target, new JMSCompressor());
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+
+            this.compressor.decompress(message);
+            if (this.target instanceof MessageListener) {
+                ((MessageListener) this.target).onMessage(message);
+            } else {
+                ((JerimumBatchMessageListener) this.target).onMessages(Collections.singletonList(message));
+            }
+
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to process message!", e);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        for (Message message : messages) {
+            this.compressor.decompress(message);
+        }
+
+        if (this.target instanceof JerimumBatchMessageListener) {
+            ((JerimumBatchMessageListener) this.target).onMessages(messages);
+        } else {
+            for (Message message : messages) {
+                ((MessageListener) this.target).onMessage(message);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import lombok.Getter;
+
+/**
+ * Bounded store of the message keys already processed. The keys are hashed to 64 bits and kept
+ * in two structures with a predictable memory footprint:
+ * <ul>
+ * <li>a Bloom filter split in two generations of <i>window</i> milliseconds each, answering fast
+ * that a key was not seen;</li>
+ * <li>an exact set of the last <i>exactCapacity</i> keys, confirming the keys the filter reports
+ * as seen.</li>
+ * </ul>
+ * A key is reported as duplicate only when both agree, so a false positive of the filter never
+ * drops a new message; a key evicted from the exact set is processed again.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSDeduplicationStore {
+
+    public static final int DEFAULT_EXPECTED_KEYS = 1000000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    public static final long DEFAULT_WINDOW = 3600000L;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    @Getter
+    private final int expectedKeys;
+    @Getter
+    private final long window;
+    @Getter
+    private final int exactCapacity;
+
+    private final int numBits;
+    private final int numHashFunctions;
+    private long[] currentGeneration;
+    private long[] previousGeneration;
+    private long generationStart;
+    private final LongFifoSet exactKeys;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * @param expectedKeys >> Number of keys expected per window.
+     * @param falsePositiveRate >> Desired false positive rate of the Bloom filter.
+     * @param window >> Time (ms) each filter generation is used.
+     * @param exactCapacity >> Number of keys kept in the exact set.
+     */
+    public JMSDeduplicationStore(int expectedKeys, double falsePositiveRate, long window, int exactCapacity) {
+
+        this.expectedKeys = Math.max(1, expectedKeys);
+        this.window = window;
+        this.exactCapacity = Math.max(1, exactCapacity);
+
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-this.expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) this.numBits / this.expectedKeys * ln2));
+
+        this.currentGeneration = new long[(this.numBits + 63) / 64];
+        this.previousGeneration = new long[this.currentGeneration.length];
+        this.generationStart = System.currentTimeMillis();
+        this.exactKeys = new LongFifoSet(this.exactCapacity);
+    }
+
+    public JMSDeduplicationStore() {
+        this(DEFAULT_EXPECTED_KEYS, DEFAULT_FALSE_POSITIVE_RATE, DEFAULT_WINDOW, DEFAULT_EXPECTED_KEYS);
+    }
+
+    /**
+     * Indicates whether the key was already added.
+     * 
+     * @param key
+     * @return boolean
+     */
+    public synchronized boolean contains(String key) {
+
+        long hash = hash(key);
+        rotateIfNecessary();
+
+        if (!mightContain(this.currentGeneration, hash) && !mightContain(this.previousGeneration, hash)) {
+            this.misses.incrementAndGet();
+            return false;
+        }
+
+        if (this.exactKeys.contains(hash)) {
+            this.hits.incrementAndGet();
+            return true;
+        }
+
+        this.falsePositives.incrementAndGet();
+        this.misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds the key to the store.
+     * 
+     * @param key
+     */
+    public synchronized void add(String key) {
+
+        long hash = hash(key);
+        rotateIfNecessary();
+        put(this.currentGeneration, hash);
+        this.exactKeys.add(hash);
+    }
+
+    /**
+     * Number of keys found in the store.
+     * 
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Number of keys not found in the store.
+     * 
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Number of keys reported as seen by the Bloom filter but not found in the exact set.
+     * 
+     * @return long
+     */
+    public long getFalsePositives() {
+        return this.falsePositives.get();
+    }
+
+    /**
+     * Returns the approximate memory (bytes) used by the store.
+     * 
+     * @return long
+     */
+    public long getMemoryFootprint() {
+        return 2L * this.currentGeneration.length * 8 + this.exactKeys.getMemoryFootprint();
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, UTF_8).asLong();
+    }
+
+    private void rotateIfNecessary() {
+
+        long now = System.currentTimeMillis();
+        if (now - this.generationStart >= this.window) {
+
+            long[] recycled = this.previousGeneration;
+            Arrays.fill(recycled, 0L);
+            if (now - this.generationStart >= 2 * this.window) {
+                Arrays.fill(this.currentGeneration, 0L);
+            }
+
+            this.previousGeneration = this.currentGeneration;
+            this.currentGeneration = recycled;
+            this.generationStart = now;
+        }
+    }
+
+    private boolean mightContain(long[] bits, long hash) {
+
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.numHashFunctions; i++) {
+            int combined = hash1 + i * hash2;
+            int index = (combined & Integer.MAX_VALUE) % this.numBits;
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(long[] bits, long hash) {
+
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.numHashFunctions; i++) {
+            int combined = hash1 + i * hash2;
+            int index = (combined & Integer.MAX_VALUE) % this.numBits;
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     * Open addressing set of longs that evicts the oldest key when full.
+     */
+    private static class LongFifoSet {
+
+        private static final long EMPTY = 0L;
+
+        private final long[] table;
+        private final int mask;
+        private final long[] insertionOrder;
+        private int oldest;
+        private int size;
+
+        LongFifoSet(int capacity) {
+
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.table = new long[tableSize];
+            this.mask = tableSize - 1;
+            this.insertionOrder = new long[capacity];
+        }
+
+        boolean contains(long key) {
+            return find(normalize(key)) >= 0;
+        }
+
+        void add(long key) {
+
+            long value = normalize(key);
+            if (find(value) >= 0) {
+                return;
+            }
+
+            if (this.size == this.insertionOrder.length) {
+                delete(find(this.insertionOrder[this.oldest]));
+                this.size--;
+            }
+
+            this.insertionOrder[this.oldest] = value;
+            this.oldest = (this.oldest + 1) % this.insertionOrder.length;
+            this.size++;
+
+            int slot = index(value);
+            while (this.table[slot] != EMPTY) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.table[slot] = value;
+        }
+
+        long getMemoryFootprint() {
+            return (this.table.length + this.insertionOrder.length) * 8L;
+        }
+
+        private int find(long value) {
+
+            int slot = index(value);
+            while (this.table[slot] != EMPTY) {
+                if (this.table[slot] == value) {
+                    return slot;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Removes the slot shifting back the keys of the same probe sequence.
+         */
+        private void delete(int slot) {
+
+            int hole = slot;
+            this.table[hole] = EMPTY;
+            int next = hole;
+            while (true) {
+
+                next = (next + 1) & this.mask;
+                long value = this.table[next];
+                if (value == EMPTY) {
+                    return;
+                }
+
+                int home = index(value);
+                boolean between = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!between) {
+                    this.table[hole] = value;
+                    this.table[next] = EMPTY;
+                    hole = next;
+                }
+            }
+        }
+
+        private int index(long value) {
+            return (int) (value ^ (value >>> 32)) & this.mask;
+        }
+
+        private static long normalize(long key) {
+            return key == EMPTY ? 1L : key;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Listener decorator that drops the expired messages before they reach the target listener. A
+ * message is expired when its {@link JMSHeaders#DEADLINE} property or its <i>JMSExpiration</i> is
+ * older than the current time minus <i>clockSkewTolerance</i>. The brokers usually discard the
+ * expired messages, but the ones already dispatched to the consumer are still delivered.
+ * <p>
+ * The target may be a {@link MessageListener} or a {@link JerimumBatchMessageListener}.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSExpirationGuardMessageListener implements MessageListener, JerimumBatchMessageListener {
+
+    @Getter
+    private final Object target;
+
+    /**
+     * Time (ms) a message is still processed after its deadline, to tolerate the clock difference
+     * between hosts.
+     */
+    @Getter
+    @Setter
+    private long clockSkewTolerance;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     */
+    public JMSExpirationGuardMessageListener(Object target) {
+
+        if (!(target instanceof MessageListener) && !(target instanceof JerimumBatchMessageListener)) {
+            throw new IllegalArgumentException(
+                "Target must implement MessageListener or JerimumBatchMessageListener: " + target);
+        }
+        this.target = target;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        if (isExpired(message, System.currentTimeMillis())) {
+            return;
+        }
+
+        if (this.target instanceof MessageListener) {
+            ((MessageListener) this.target).onMessage(message);
+        } else {
+            try {
+                ((JerimumBatchMessageListener) this.target).onMessages(Collections.singletonList(message));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to process message!", e);
+            }
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        long now = System.currentTimeMillis();
+        List<Message> accepted = new ArrayList<Message>(messages.size());
+        for (Message message : messages) {
+            if (!isExpired(message, now)) {
+                accepted.add(message);
+            }
+        }
+
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        if (this.target instanceof JerimumBatchMessageListener) {
+            ((JerimumBatchMessageListener) this.target).onMessages(accepted);
+        } else {
+            for (Message message : accepted) {
+                ((MessageListener) this.target).onMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Number of messages given to the target listener.
+     * 
+     * @return long
+     */
+    public long getAcceptedCount() {
+        return this.acceptedCount.get();
+    }
+
+    /**
+     * Number of expired messages dropped.
+     * 
+     * @return long
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Indicates whether nobody is waiting for the processing of the message anymore.
+     * 
+     * @param message
+     * @param now >> Current time (ms since epoch).
+     * @return boolean
+     */
+    protected boolean isExpired(Message message, long now) {
+
+        try {
+
+            long deadline = message.getJMSExpiration();
+            if (message.propertyExists(JMSHeaders.DEADLINE)) {
+                long requestDeadline = message.getLongProperty(JMSHeaders.DEADLINE);
+                deadline = deadline > 0 ? Math.min(deadline, requestDeadline) : requestDeadline;
+            }
+
+            if (deadline > 0 && deadline + this.clockSkewTolerance < now) {
+                this.droppedCount.incrementAndGet();
+                LoggerUtils.logWarning(JMSExpirationGuardMessageListener.class,
+                    "Message '{}' dropped, expired {} ms ago", message.getJMSMessageID(), now - deadline);
+                return true;
+            }
+
+        } catch (JMSException e) {
+            LoggerUtils.logError(JMSExpirationGuardMessageListener.class, "Unable to read message expiration!", e);
+        }
+
+        this.acceptedCount.incrementAndGet();
+        return false;
+    }
+
+}
@@ -0,0 +1,154 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import br.com.jerimum.fw.jms.JMSMessageKeyExtractor;
+import br.com.jerimum.fw.jms.JMSMessageKeyExtractors;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+
+/**
+ * Listener decorator that drops the messages whose key was already processed, according to a
+ * {@link JMSDeduplicationStore}. The key is recorded only after the target listener returns, so a
+ * message that fails is still redelivered; messages without key are always processed.
+ * <p>
+ * The target may be a {@link MessageListener} or a {@link JerimumBatchMessageListener}. In batch
+ * mode the duplicates are removed from the batch, including the repeated keys of the same batch,
+ * before it is given to the target.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSIdempotentMessageListener implements MessageListener, JerimumBatchMessageListener {
+
+    @Getter
+    private final Object target;
+    @Getter
+    private final JMSMessageKeyExtractor keyExtractor;
+    @Getter
+    private final JMSDeduplicationStore store;
+
+    /**
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     * @param keyExtractor
+     * @param store
+     */
+    public JMSIdempotentMessageListener(Object target, JMSMessageKeyExtractor keyExtractor,
+        JMSDeduplicationStore store) {
+
+        if (!(target instanceof MessageListener) && !(target instanceof JerimumBatchMessageListener)) {
+            throw new IllegalArgumentException(
+                "Target must implement MessageListener or JerimumBatchMessageListener: " + target);
+        }
+
+        this.target = target;
+        this.keyExtractor = keyExtractor;
+        this.store = store;
+    }
+
+    /**
+     * Uses the <i>JMSMessageID</i> as key.
+     * 
+     * @param target
+     * @param store
+     */
+    public JMSIdempotentMessageListener(Object target, JMSDeduplicationStore store) {
+        this(target, JMSMessageKeyExtractors.messageID(), store);
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        String key = getKey(message);
+        if (key != null && this.store.contains(key)) {
+            LoggerUtils.logDebug(JMSIdempotentMessageListener.class, "Duplicate message '{}' dropped", key);
+            return;
+        }
+
+        if (this.target instanceof MessageListener) {
+            ((MessageListener) this.target).onMessage(message);
+        } else {
+            try {
+                ((JerimumBatchMessageListener) this.target).onMessages(Collections.singletonList(message));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to process message!", e);
+            }
+        }
+
+        if (key != null) {
+            this.store.add(key);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        List<Message> accepted = new ArrayList<Message>(messages.size());
+        Set<String> keys = new HashSet<String>();
+        for (Message message : messages) {
+
+            String key = getKey(message);
+            if (key == null) {
+                accepted.add(message);
+            } else if (!keys.contains(key) && !this.store.contains(key)) {
+                keys.add(key);
+                accepted.add(message);
+            } else {
+                LoggerUtils.logDebug(JMSIdempotentMessageListener.class, "Duplicate message '{}' dropped", key);
+            }
+        }
+
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        if (this.target instanceof JerimumBatchMessageListener) {
+            ((JerimumBatchMessageListener) this.target).onMessages(accepted);
+        } else {
+            for (Message message : accepted) {
+                ((MessageListener) this.target).onMessage(message);
+            }
+        }
+
+        for (String key : keys) {
+            this.store.add(key);
+        }
+    }
+
+    /**
+     * Number of duplicate messages dropped.
+     * 
+     * @return long
+     */
+    public long getHits() {
+        return this.store.getHits();
+    }
+
+    /**
+     * Number of messages not found in the store.
+     * 
+     * @return long
+     */
+    public long getMisses() {
+        return this.store.getMisses();
+    }
+
+    private String getKey(Message message) {
+
+        try {
+            return this.keyExtractor.getKey(message);
+        } catch (JMSException e) {
+            throw new IllegalStateException("Unable to extract message key!", e);
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.jms.JMSMessageKeyExtractor;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+
+/**
+ * Dispatches the received messages to a set of single-threaded lanes chosen by the hash of the
+ * message key, so the messages with the same key are processed in the order they were received
+ * while messages with different keys are processed in parallel. Messages without key are spread
+ * over all the lanes.
+ * <p>
+ * Each lane holds at most <i>laneCapacity</i> messages; when a lane is full the container thread
+ * blocks until there is room, so the consumption from the broker slows down to the processing
+ * rate. To keep the order of the broker the container must use a single consumer.
+ * <p>
+ * Used as a {@link MessageListener}, the message is acknowledged as soon as it is queued. Used as
+ * a {@link JerimumBatchMessageListener}, each batch is committed only after all its messages were
+ * processed by the lanes and rolled back if any of them fails; the messages of a failed batch not
+ * yet processed are skipped. The batch is also rolled back when the dispatcher is stopped before
+ * processing all its messages.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSOrderedMessageDispatcher implements MessageListener, JerimumBatchMessageListener, DisposableBean {
+
+    public static final int DEFAULT_LANE_CAPACITY = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000L;
+
+    private static final long IDLE_POLL_TIME = 500L;
+
+    @Getter
+    private final MessageListener target;
+    @Getter
+    private final JMSMessageKeyExtractor keyExtractor;
+    private final List<BlockingQueue<LaneTask>> lanes;
+    private final ExecutorService laneThreads;
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param target >> Listener invoked by the lanes.
+     * @param keyExtractor
+     * @param laneCount
+     * @param laneCapacity >> Maximum number of messages waiting in each lane.
+     */
+    public JMSOrderedMessageDispatcher(MessageListener target, JMSMessageKeyExtractor keyExtractor, int laneCount,
+        int laneCapacity) {
+
+        this.target = target;
+        this.keyExtractor = keyExtractor;
+
+        int count = Math.max(1, laneCount);
+        this.lanes = new ArrayList<BlockingQueue<LaneTask>>(count);
+        this.laneThreads = Executors.newFixedThreadPool(count,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-lane-%d").build());
+
+        for (int i = 0; i < count; i++) {
+            final BlockingQueue<LaneTask> lane = new ArrayBlockingQueue<LaneTask>(Math.max(1, laneCapacity));
+            this.lanes.add(lane);
+            this.laneThreads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    laneLoop(lane);
+                }
+            });
+        }
+    }
+
+    public JMSOrderedMessageDispatcher(MessageListener target, JMSMessageKeyExtractor keyExtractor, int laneCount) {
+        this(target, keyExtractor, laneCount, DEFAULT_LANE_CAPACITY);
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+
+            dispatch(message, null);
+
+        } catch (JMSException e) {
+            throw new IllegalStateException("Unable to dispatch message!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching message!", e);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        BatchCompletion completion = new BatchCompletion(messages.size());
+        for (Message message : messages) {
+            dispatch(message, completion);
+        }
+
+        while (!completion.await(IDLE_POLL_TIME)) {
+            if (this.laneThreads.isTerminated()) {
+                throw new IllegalStateException("Ordered dispatcher stopped before processing the batch!");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lanes.
+     * 
+     * @return int
+     */
+    public int getLaneCount() {
+        return this.lanes.size();
+    }
+
+    /**
+     * Returns the number of messages waiting in each lane.
+     * 
+     * @return int[]
+     */
+    public int[] getLaneBacklog() {
+
+        int[] backlog = new int[this.lanes.size()];
+        for (int i = 0; i < backlog.length; i++) {
+            backlog[i] = this.lanes.get(i).size();
+        }
+        return backlog;
+    }
+
+    /**
+     * Stops accepting messages and waits for the lanes to process the messages already queued. The
+     * batches whose messages are still queued after <i>DEFAULT_SHUTDOWN_TIMEOUT</i> fail.
+     */
+    @Override
+    public void destroy() {
+
+        this.running = false;
+        this.laneThreads.shutdown();
+        try {
+            if (!this.laneThreads.awaitTermination(DEFAULT_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                this.laneThreads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.laneThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the lane of the key. Messages without key are spread in round-robin.
+     * 
+     * @param key
+     * @return int
+     */
+    protected int selectLane(String key) {
+
+        int hash = key != null ? key.hashCode() : this.nextLane.getAndIncrement();
+        return (hash & Integer.MAX_VALUE) % this.lanes.size();
+    }
+
+    private void dispatch(Message message, BatchCompletion completion) throws JMSException, InterruptedException {
+
+        if (!this.running) {
+            throw new IllegalStateException("Ordered dispatcher stopped!");
+        }
+
+        BlockingQueue<LaneTask> lane = this.lanes.get(selectLane(this.keyExtractor.getKey(message)));
+        LaneTask task = new LaneTask(message, completion);
+        while (!lane.offer(task, IDLE_POLL_TIME, TimeUnit.MILLISECONDS)) {
+            if (!this.running) {
+                throw new IllegalStateException("Ordered dispatcher stopped!");
+            }
+        }
+    }
+
+    private void laneLoop(BlockingQueue<LaneTask> lane) {
+
+        try {
+
+            while (this.running || !lane.isEmpty()) {
+
+                LaneTask task = lane.poll(IDLE_POLL_TIME, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    process(task);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            abandon(lane);
+        }
+    }
+
+    /**
+     * Fails the batches of the messages left in the lane when it stops, so they are rolled back
+     * instead of waiting forever.
+     */
+    private void abandon(BlockingQueue<LaneTask> lane) {
+
+        List<LaneTask> tasks = new ArrayList<LaneTask>();
+        lane.drainTo(tasks);
+        for (LaneTask task : tasks) {
+            if (task.completion != null) {
+                task.completion.done(new IllegalStateException("Ordered dispatcher stopped!"));
+            } else {
+                LoggerUtils.logWarning(JMSOrderedMessageDispatcher.class,
+                    "Ordered dispatcher stopped, message '{}' not processed", getMessageID(task.message));
+            }
+        }
+    }
+
+    private static String getMessageID(Message message) {
+
+        try {
+            return message.getJMSMessageID();
+        } catch (JMSException e) {
+            return null;
+        }
+    }
+
+    private void process(LaneTask task) {
+
+        /*
+         * the batch will be redelivered, the next messages of the key must wait for it
+         */
+        if (task.completion != null && task.completion.isFailed()) {
+            task.completion.done(null);
+            return;
+        }
+
+        try {
+
+            this.target.onMessage(task.message);
+            if (task.completion != null) {
+                task.completion.done(null);
+            }
+
+        } catch (Throwable e) {
+            /*
+             * errors are caught too: the lane must keep consuming and the batch must complete
+             */
+            if (task.completion != null) {
+                task.completion.done(e instanceof RuntimeException ? (RuntimeException) e
+                    : new IllegalStateException("Unable to process message!", e));
+            } else {
+                LoggerUtils.logError(JMSOrderedMessageDispatcher.class, "Unable to process message!", e);
+            }
+        }
+    }
+
+    /**
+     * Message waiting in a lane.
+     */
+    private static class LaneTask {
+
+        private final Message message;
+        private final BatchCompletion completion;
+
+        LaneTask(Message message, BatchCompletion completion) {
+            this.message = message;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * Tracks the messages of a batch still being processed by the lanes.
+     */
+    private static class BatchCompletion {
+
+        private final CountDownLatch remaining;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+        BatchCompletion(int size) {
+            this.remaining = new CountDownLatch(size);
+        }
+
+        void done(RuntimeException e) {
+            if (e != null) {
+                this.failure.compareAndSet(null, e);
+            }
+            this.remaining.countDown();
+        }
+
+        boolean isFailed() {
+            return this.failure.get() != null;
+        }
+
+        /**
+         * Waits for the messages of the batch to be processed.
+         * 
+         * @return <code>false</code> if the timeout elapsed first.
+         */
+        boolean await(long timeout) throws InterruptedException {
+
+            if (!this.remaining.await(timeout, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            if (this.failure.get() != null) {
+                throw this.failure.get();
+            }
+            return true;
+        }
+    }
+
+}
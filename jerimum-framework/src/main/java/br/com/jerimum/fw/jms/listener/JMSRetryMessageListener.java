@@ -0,0 +1,373 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.jms.JMSHeaders;
+import br.com.jerimum.fw.jms.JMSMessageUtils;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Listener decorator that takes the failed messages out of the broker redelivery loop. When the
+ * target listener fails, a copy of the message is re-sent after an exponential backoff with
+ * jitter and the original message is acknowledged, so the consumer thread goes on with the next
+ * messages. After <i>maxAttempts</i> failures the message is sent to the dead-letter queue with
+ * the {@link JMSHeaders} failure properties.
+ * <p>
+ * The copy is sent by a template on the given connection factory. When it is the connection
+ * factory of the listener container, the copy is sent in the session of the consumer and is
+ * committed along with the failed message, so a crash can neither lose nor duplicate it.
+ * <p>
+ * The backoff is made by the broker when <i>scheduledDelayProperty</i> names the property it uses
+ * to delay the delivery (e.g. <code>AMQ_SCHEDULED_DELAY</code> on ActiveMQ). Otherwise
+ * <i>inMemoryBackoff</i> must be enabled: then a scheduler thread holds the messages in memory and
+ * re-sends them after the backoff, outside the consumer transaction, so the ones still waiting are
+ * lost if the process crashes. They are re-sent without delay when the listener is destroyed. A
+ * listener with neither of them is rejected by {@link #afterPropertiesSet()}, since re-sending the
+ * copy at once would only spin the failed message through the queue.
+ * <p>
+ * When the target is a {@link JerimumBatchMessageListener} and the batch fails, every message of
+ * the batch is rescheduled. If a message cannot be rescheduled the failure is thrown, so the
+ * broker redelivers it.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSRetryMessageListener implements MessageListener, JerimumBatchMessageListener, InitializingBean,
+    DisposableBean {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_INITIAL_INTERVAL = 1000L;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+    public static final long DEFAULT_MAX_INTERVAL = 60000L;
+    public static final double DEFAULT_JITTER = 0.2;
+
+    @Getter
+    private final Object target;
+    @Getter
+    private final Queue deadLetterQueue;
+
+    /**
+     * Queue the failed messages are re-sent to. When not set, the queue they were consumed from.
+     */
+    @Getter
+    @Setter
+    private Queue retryQueue;
+
+    /**
+     * Number of attempts before the message is dead-lettered.
+     */
+    @Getter
+    @Setter
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    @Getter
+    @Setter
+    private long initialInterval = DEFAULT_INITIAL_INTERVAL;
+    @Getter
+    @Setter
+    private double multiplier = DEFAULT_MULTIPLIER;
+    @Getter
+    @Setter
+    private long maxInterval = DEFAULT_MAX_INTERVAL;
+
+    /**
+     * Fraction of the interval randomly added or subtracted from it.
+     */
+    @Getter
+    @Setter
+    private double jitter = DEFAULT_JITTER;
+
+    /**
+     * Message property used by the broker to delay the delivery.
+     */
+    @Getter
+    @Setter
+    private String scheduledDelayProperty;
+
+    /**
+     * Holds the failed messages in memory during the backoff when the broker cannot delay them.
+     * The messages waiting are lost if the process crashes.
+     */
+    @Getter
+    @Setter
+    private boolean inMemoryBackoff;
+
+    private final JmsTemplate jmsTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final Set<PendingRetry> pendingRetries = Collections
+        .newSetFromMap(new ConcurrentHashMap<PendingRetry, Boolean>());
+
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+
+    /**
+     * @param target >> {@link MessageListener} or {@link JerimumBatchMessageListener}.
+     * @param connectionFactory >> Used to re-send the failed messages. Must be the connection factory of
+     *        the listener container (or the pool of its listener connection factory) for the copy to be
+     *        sent in the consumer transaction.
+     * @param deadLetterQueue
+     */
+    public JMSRetryMessageListener(Object target, ConnectionFactory connectionFactory, Queue deadLetterQueue) {
+
+        if (!(target instanceof MessageListener) && !(target instanceof JerimumBatchMessageListener)) {
+            throw new IllegalArgumentException(
+                "Target must implement MessageListener or JerimumBatchMessageListener: " + target);
+        }
+
+        this.target = target;
+        this.deadLetterQueue = deadLetterQueue;
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.scheduler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-retry-%d").build());
+    }
+
+    @Override
+    public void onMessage(Message message) {
+
+        try {
+
+            if (this.target instanceof MessageListener) {
+                ((MessageListener) this.target).onMessage(message);
+            } else {
+                ((JerimumBatchMessageListener) this.target).onMessages(Collections.singletonList(message));
+            }
+
+        } catch (Exception e) {
+            handleFailure(message, e);
+        }
+    }
+
+    @Override
+    public void onMessages(List<Message> messages) throws Exception {
+
+        if (this.target instanceof JerimumBatchMessageListener) {
+
+            try {
+                ((JerimumBatchMessageListener) this.target).onMessages(messages);
+            } catch (Exception e) {
+                for (Message message : messages) {
+                    handleFailure(message, e);
+                }
+            }
+
+        } else {
+            for (Message message : messages) {
+                onMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Checks that the failed messages are delayed before they are re-sent.
+     */
+    @Override
+    public void afterPropertiesSet() {
+
+        if (this.scheduledDelayProperty == null && !this.inMemoryBackoff) {
+            throw new IllegalStateException(
+                "Either scheduledDelayProperty or inMemoryBackoff must be set to delay the failed messages!");
+        }
+        if (this.jitter < 0 || this.jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1: " + this.jitter);
+        }
+    }
+
+    /**
+     * Re-sends at once the messages waiting for their backoff and stops the scheduler.
+     */
+    @Override
+    public void destroy() {
+
+        this.scheduler.shutdownNow();
+        for (PendingRetry retry : this.pendingRetries) {
+            retry.run();
+        }
+    }
+
+    /**
+     * Number of failed messages rescheduled.
+     * 
+     * @return long
+     */
+    public long getRetriedCount() {
+        return this.retriedCount.get();
+    }
+
+    /**
+     * Number of messages sent to the dead-letter queue.
+     * 
+     * @return long
+     */
+    public long getDeadLetteredCount() {
+        return this.deadLetteredCount.get();
+    }
+
+    /**
+     * Number of messages waiting in memory for their backoff.
+     * 
+     * @return int
+     */
+    public int getPendingCount() {
+        return this.pendingRetries.size();
+    }
+
+    /**
+     * Returns the time (ms) to wait before the next attempt: the exponential interval, capped by
+     * <i>maxInterval</i>, randomly spread by <i>jitter</i> so the messages that failed together are
+     * not retried together.
+     * 
+     * @param attempts >> Number of failed attempts.
+     * @return long
+     */
+    protected long getBackoff(int attempts) {
+
+        double interval = Math.min(this.maxInterval, this.initialInterval * Math.pow(this.multiplier, attempts - 1));
+        double spread = interval * this.jitter;
+        return (long) Math.max(0, interval - spread + ThreadLocalRandom.current().nextDouble() * 2 * spread);
+    }
+
+    private void handleFailure(Message message, Exception failure) {
+
+        try {
+
+            int attempts = 1;
+            if (message.propertyExists(JMSHeaders.RETRY_ATTEMPTS)) {
+                attempts += message.getIntProperty(JMSHeaders.RETRY_ATTEMPTS);
+            }
+
+            if (attempts >= this.maxAttempts) {
+                deadLetter(message, attempts, failure);
+            } else {
+                scheduleRetry(message, attempts, failure);
+            }
+
+        } catch (Exception e) {
+            LoggerUtils.logError(JMSRetryMessageListener.class, "Unable to reschedule failed message!", e);
+            throw new IllegalStateException("Unable to process message!", failure);
+        }
+    }
+
+    private void scheduleRetry(Message message, int attempts, Exception failure) throws JMSException {
+
+        long backoff = getBackoff(attempts);
+        Destination destination = this.retryQueue != null ? this.retryQueue : message.getJMSDestination();
+        LoggerUtils.logWarning(JMSRetryMessageListener.class,
+            "Message '{}' failed ({} of {} attempts), retrying in {} ms: {}", message.getJMSMessageID(), attempts,
+            this.maxAttempts, backoff, failure.getMessage());
+
+        if (this.scheduledDelayProperty != null) {
+            send(destination, message, attempts, backoff, null);
+        } else {
+            PendingRetry retry = new PendingRetry(destination, message, attempts);
+            this.pendingRetries.add(retry);
+            this.scheduler.schedule(retry, backoff, TimeUnit.MILLISECONDS);
+        }
+        this.retriedCount.incrementAndGet();
+    }
+
+    private void deadLetter(Message message, int attempts, Exception failure) throws JMSException {
+
+        LoggerUtils.logError(JMSRetryMessageListener.class,
+            "Message '{}' failed {} times, sending to dead-letter queue", message.getJMSMessageID(), attempts);
+        send(this.deadLetterQueue, message, attempts, 0, failure);
+        this.deadLetteredCount.incrementAndGet();
+    }
+
+    private void send(final Destination destination, final Message message, final int attempts, final long delay,
+        final Exception failure) {
+
+        this.jmsTemplate.send(destination, new MessageCreator() {
+            @Override
+            public Message createMessage(Session session) throws JMSException {
+
+                Message copy = JMSMessageUtils.copyMessage(session, message);
+                copy.setIntProperty(JMSHeaders.RETRY_ATTEMPTS, attempts);
+                if (!copy.propertyExists(JMSHeaders.ORIGINAL_MESSAGE_ID)) {
+                    copy.setStringProperty(JMSHeaders.ORIGINAL_MESSAGE_ID, message.getJMSMessageID());
+                }
+                if (!copy.propertyExists(JMSHeaders.ORIGINAL_DESTINATION) && message.getJMSDestination() != null) {
+                    copy.setStringProperty(JMSHeaders.ORIGINAL_DESTINATION, getName(message.getJMSDestination()));
+                }
+                if (delay > 0) {
+                    copy.setLongProperty(scheduledDelayProperty, delay);
+                }
+                if (failure != null) {
+                    Throwable cause = Throwables.getRootCause(failure);
+                    copy.setStringProperty(JMSHeaders.FAILURE_EXCEPTION, cause.getClass().getName());
+                    copy.setStringProperty(JMSHeaders.FAILURE_MESSAGE, String.valueOf(cause.getMessage()));
+                    copy.setLongProperty(JMSHeaders.FAILURE_TIMESTAMP, System.currentTimeMillis());
+                }
+                return copy;
+            }
+        });
+    }
+
+    private static String getName(Destination destination) throws JMSException {
+        return destination instanceof Queue ? ((Queue) destination).getQueueName() : destination.toString();
+    }
+
+    /**
+     * Failed message waiting in memory for its backoff.
+     */
+    private class PendingRetry implements Runnable {
+
+        private final Destination destination;
+        private final Message message;
+        private final int attempts;
+        private final AtomicBoolean sent = new AtomicBoolean();
+
+        PendingRetry(Destination destination, Message message, int attempts) {
+            this.destination = destination;
+            this.message = message;
+            this.attempts = attempts;
+        }
+
+        @Override
+        public void run() {
+
+            if (!this.sent.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+
+                send(this.destination, this.message, this.attempts, 0, null);
+                pendingRetries.remove(this);
+
+            } catch (RuntimeException e) {
+                this.sent.set(false);
+                LoggerUtils.logError(JMSRetryMessageListener.class, "Unable to re-send failed message, retrying in "
+                    + maxInterval + " ms", e);
+                if (!scheduler.isShutdown()) {
+                    scheduler.schedule(this, maxInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package br.com.jerimum.fw.jms.listener;
+
+import java.util.List;
+
+import javax.jms.Message;
+
+/**
+ * Listener that receives the messages in batches through a
+ * {@link JMSBatchMessageListenerContainer}. All the messages of a batch are received in the same
+ * session and are committed (or acknowledged) together after {@link #onMessages(List)} returns.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public interface JerimumBatchMessageListener {
+
+    /**
+     * Processes a batch of messages. Any exception thrown rolls back the whole batch, so every
+     * message of it will be redelivered.
+     * 
+     * @param messages >> Never empty.
+     * @throws Exception
+     */
+    void onMessages(List<Message> messages) throws Exception;
+
+}
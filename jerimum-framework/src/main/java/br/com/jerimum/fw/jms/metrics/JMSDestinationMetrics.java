@@ -0,0 +1,227 @@
+package br.com.jerimum.fw.jms.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import lombok.Getter;
+
+/**
+ * Metrics of the operations of the JMS gateway on one destination. The latencies are recorded in
+ * nanoseconds and the payload sizes in characters for {@link TextMessage}s and bytes for
+ * {@link BytesMessage}s.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSDestinationMetrics {
+
+    @Getter
+    private final String destinationName;
+
+    /**
+     * Time taken by the broker to accept each message sent.
+     */
+    @Getter
+    private final JMSHistogram sendLatency = new JMSHistogram();
+
+    /**
+     * Time waited by each receive call.
+     */
+    @Getter
+    private final JMSHistogram receiveLatency = new JMSHistogram();
+
+    /**
+     * Time from the request sent to its reply received.
+     */
+    @Getter
+    private final JMSHistogram roundTripLatency = new JMSHistogram();
+    @Getter
+    private final JMSHistogram payloadSize = new JMSHistogram();
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicInteger inFlightRequestCount = new AtomicInteger();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong failedRequestCount = new AtomicLong();
+    private final AtomicLong brokerErrorCount = new AtomicLong();
+
+    public JMSDestinationMetrics(String destinationName) {
+        this.destinationName = destinationName;
+    }
+
+    /**
+     * Records a message sent.
+     * 
+     * @param latency >> Nanoseconds taken by the send.
+     * @param message
+     */
+    public void recordSend(long latency, Message message) {
+
+        this.sendLatency.record(latency);
+        this.sentCount.incrementAndGet();
+        recordPayloadSize(message);
+    }
+
+    /**
+     * Records a receive call.
+     * 
+     * @param latency >> Nanoseconds waited.
+     * @param messages >> The messages received.
+     */
+    public void recordReceive(long latency, List<Message> messages) {
+
+        this.receiveLatency.record(latency);
+        this.receivedCount.addAndGet(messages.size());
+        for (Message message : messages) {
+            recordPayloadSize(message);
+        }
+    }
+
+    /**
+     * Records a request sent, which is in flight until its reply arrives, times out or fails.
+     * 
+     * @return long >> The start time to be given back when the request ends.
+     */
+    public long requestStarted() {
+
+        this.requestCount.incrementAndGet();
+        this.inFlightRequestCount.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the reply of a request.
+     * 
+     * @param startTime >> Returned by {@link #requestStarted()}.
+     */
+    public void requestCompleted(long startTime) {
+
+        this.inFlightRequestCount.decrementAndGet();
+        this.roundTripLatency.record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records a request without reply within the timeout.
+     */
+    public void requestTimedOut() {
+
+        this.inFlightRequestCount.decrementAndGet();
+        this.timeoutCount.incrementAndGet();
+    }
+
+    /**
+     * Records a request that failed before its reply arrived.
+     */
+    public void requestFailed() {
+
+        this.inFlightRequestCount.decrementAndGet();
+        this.failedRequestCount.incrementAndGet();
+    }
+
+    /**
+     * Records a request abandoned by the caller before its reply arrived.
+     */
+    public void requestCancelled() {
+        this.inFlightRequestCount.decrementAndGet();
+    }
+
+    /**
+     * Records a failure of the broker to send or receive messages.
+     */
+    public void recordBrokerError() {
+        this.brokerErrorCount.incrementAndGet();
+    }
+
+    public long getSentCount() {
+        return this.sentCount.get();
+    }
+
+    public long getReceivedCount() {
+        return this.receivedCount.get();
+    }
+
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    public int getInFlightRequestCount() {
+        return this.inFlightRequestCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return this.timeoutCount.get();
+    }
+
+    public long getFailedRequestCount() {
+        return this.failedRequestCount.get();
+    }
+
+    public long getBrokerErrorCount() {
+        return this.brokerErrorCount.get();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder(this.destinationName).append(": ");
+        sb.append("sent=").append(getSentCount()).append(", ");
+        sb.append("received=").append(getReceivedCount()).append(", ");
+        sb.append("requests=").append(getRequestCount()).append(", ");
+        sb.append("inFlight=").append(getInFlightRequestCount()).append(", ");
+        sb.append("timeouts=").append(getTimeoutCount()).append(", ");
+        sb.append("failedRequests=").append(getFailedRequestCount()).append(", ");
+        sb.append("brokerErrors=").append(getBrokerErrorCount());
+        appendLatency(sb, "sendLatency", this.sendLatency);
+        appendLatency(sb, "receiveLatency", this.receiveLatency);
+        appendLatency(sb, "roundTripLatency", this.roundTripLatency);
+        sb.append(", payloadSize[p50=").append(this.payloadSize.getP50());
+        sb.append(", p99=").append(this.payloadSize.getP99());
+        sb.append(", max=").append(this.payloadSize.getMax()).append(']');
+        return sb.toString();
+    }
+
+    private void recordPayloadSize(Message message) {
+
+        try {
+
+            if (message instanceof TextMessage) {
+                String text = ((TextMessage) message).getText();
+                if (text != null) {
+                    this.payloadSize.record(text.length());
+                }
+            } else if (message instanceof BytesMessage) {
+                BytesMessage bytesMessage = (BytesMessage) message;
+                bytesMessage.reset();
+                this.payloadSize.record(bytesMessage.getBodyLength());
+            }
+
+        } catch (JMSException e) {
+            // size not available
+        }
+    }
+
+    private static void appendLatency(StringBuilder sb, String name, JMSHistogram histogram) {
+
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        sb.append(", ").append(name).append("[count=").append(histogram.getCount());
+        sb.append(", p50=").append(micros(histogram.getP50()));
+        sb.append(", p99=").append(micros(histogram.getP99()));
+        sb.append(", p999=").append(micros(histogram.getP999()));
+        sb.append(", max=").append(micros(histogram.getMax())).append(']');
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / (double) TimeUnit.MICROSECONDS.toNanos(1));
+    }
+
+}
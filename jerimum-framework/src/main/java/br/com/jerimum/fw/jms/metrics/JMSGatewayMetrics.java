@@ -0,0 +1,146 @@
+package br.com.jerimum.fw.jms.metrics;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.Topic;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Metrics of the JMS gateway by destination. The temporary destinations are counted together,
+ * under {@link #TEMPORARY_DESTINATION}.
+ * <p>
+ * When declared as a Spring bean together with an annotation-driven MBean exporter (e.g.
+ * <code>&lt;context:mbean-export/&gt;</code>), the totals and the {@link #dump()} of all the
+ * destinations are published through JMX.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+@ManagedResource(description = "JMS gateway metrics")
+public class JMSGatewayMetrics {
+
+    public static final String TEMPORARY_DESTINATION = "temporary";
+
+    private final ConcurrentMap<String, JMSDestinationMetrics> destinations =
+        new ConcurrentHashMap<String, JMSDestinationMetrics>();
+
+    /**
+     * Returns the metrics of the destination, created on first use.
+     * 
+     * @param destination
+     * @return {@link JMSDestinationMetrics} or <code>null</code> if the destination is
+     *         <code>null</code>.
+     */
+    public JMSDestinationMetrics forDestination(Destination destination) {
+
+        if (destination == null) {
+            return null;
+        }
+
+        String name = nameOf(destination);
+        JMSDestinationMetrics metrics = this.destinations.get(name);
+        if (metrics == null) {
+            metrics = new JMSDestinationMetrics(name);
+            JMSDestinationMetrics existing = this.destinations.putIfAbsent(name, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the destination.
+     * 
+     * @param destinationName
+     * @return {@link JMSDestinationMetrics} or <code>null</code> if nothing was recorded for it.
+     */
+    public JMSDestinationMetrics getDestinationMetrics(String destinationName) {
+        return this.destinations.get(destinationName);
+    }
+
+    @ManagedAttribute(description = "Destinations with recorded metrics")
+    public Set<String> getDestinationNames() {
+        return new TreeSet<String>(this.destinations.keySet());
+    }
+
+    @ManagedAttribute(description = "Requests waiting for a reply")
+    public int getInFlightRequestCount() {
+
+        int total = 0;
+        for (JMSDestinationMetrics metrics : this.destinations.values()) {
+            total += metrics.getInFlightRequestCount();
+        }
+        return total;
+    }
+
+    @ManagedAttribute(description = "Requests without reply within the timeout")
+    public long getTimeoutCount() {
+
+        long total = 0;
+        for (JMSDestinationMetrics metrics : this.destinations.values()) {
+            total += metrics.getTimeoutCount();
+        }
+        return total;
+    }
+
+    @ManagedAttribute(description = "Failures of the broker to send or receive messages")
+    public long getBrokerErrorCount() {
+
+        long total = 0;
+        for (JMSDestinationMetrics metrics : this.destinations.values()) {
+            total += metrics.getBrokerErrorCount();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the metrics of every destination, one per line.
+     * 
+     * @return {@link String}
+     */
+    @ManagedOperation(description = "Metrics of every destination")
+    public String dump() {
+
+        StringBuilder sb = new StringBuilder();
+        for (String name : getDestinationNames()) {
+            sb.append(this.destinations.get(name)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    private static String nameOf(Destination destination) {
+
+        if (destination instanceof TemporaryQueue || destination instanceof TemporaryTopic) {
+            return TEMPORARY_DESTINATION;
+        }
+
+        try {
+            if (destination instanceof Queue) {
+                return ((Queue) destination).getQueueName();
+            }
+            if (destination instanceof Topic) {
+                return ((Topic) destination).getTopicName();
+            }
+        } catch (JMSException e) {
+            // falls back to the description of the destination
+        }
+        return destination.toString();
+    }
+
+}
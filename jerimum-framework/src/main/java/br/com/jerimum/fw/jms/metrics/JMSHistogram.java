@@ -0,0 +1,123 @@
+package br.com.jerimum.fw.jms.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values. The values are counted in log-linear buckets: the
+ * values below 16 have a bucket each and every power of two above is split in 16 buckets, so a
+ * percentile is at most 1/16 above the value actually recorded. Recording a value takes a few
+ * atomic increments and no allocation.
+ * <p>
+ * The percentiles are read without stopping the writers, so they may not include the values
+ * being recorded at the same time.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as <code>0</code>.
+     * 
+     * @param value
+     */
+    public void record(long value) {
+
+        long positive = Math.max(0, value);
+        this.counts.incrementAndGet(bucketOf(positive));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(positive);
+
+        long currentMax = this.max.get();
+        while (positive > currentMax && !this.max.compareAndSet(currentMax, positive)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values are.
+     * 
+     * @param percentile >> From 0.0 to 1.0 (e.g. 0.999 for p999).
+     * @return long >> <code>0</code> when nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+
+        long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, percentile)) * total));
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += this.counts.get(bucket);
+            if (cumulative >= target) {
+                return Math.min(highestValueOf(bucket), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    public long getP50() {
+        return getPercentile(0.5);
+    }
+
+    public long getP99() {
+        return getPercentile(0.99);
+    }
+
+    public long getP999() {
+        return getPercentile(0.999);
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Average of the recorded values.
+     * 
+     * @return double >> <code>0</code> when nothing was recorded.
+     */
+    public double getMean() {
+
+        long total = this.count.get();
+        return total == 0 ? 0 : (double) this.sum.get() / total;
+    }
+
+    private static int bucketOf(long value) {
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueOf(int bucket) {
+
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) >>> SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1);
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,201 @@
+package br.com.jerimum.fw.jms.pool;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Pool of heap {@link ByteBuffer}s and {@link CharBuffer}s used to read, decode and transform the
+ * message bodies without allocating new arrays for each message. The buffers are kept by capacity,
+ * rounded up to the next power of two, and at most <i>maxBuffersPerSize</i> buffers of each type
+ * and capacity are retained.
+ * Buffers larger than <i>maxPooledCapacity</i> are allocated on demand and never retained.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSBufferPool {
+
+    public static final int DEFAULT_MAX_POOLED_CAPACITY = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_BUFFERS_PER_SIZE = 16;
+
+    private static final int MIN_SHIFT = 10;
+
+    @Getter
+    private final int maxPooledCapacity;
+    @Getter
+    private final int maxBuffersPerSize;
+
+    private final Buffers<ByteBuffer> byteBuffers;
+    private final Buffers<CharBuffer> charBuffers;
+    private final AtomicLong allocatedCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    public JMSBufferPool() {
+        this(DEFAULT_MAX_POOLED_CAPACITY, DEFAULT_MAX_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * @param maxPooledCapacity >> Largest capacity (bytes or chars) retained by the pool.
+     * @param maxBuffersPerSize >> Number of buffers retained for each capacity.
+     */
+    public JMSBufferPool(int maxPooledCapacity, int maxBuffersPerSize) {
+
+        this.maxPooledCapacity = maxPooledCapacity;
+        this.maxBuffersPerSize = maxBuffersPerSize;
+        this.byteBuffers = new Buffers<ByteBuffer>(shift(maxPooledCapacity) + 1);
+        this.charBuffers = new Buffers<CharBuffer>(shift(maxPooledCapacity) + 1);
+    }
+
+    /**
+     * Returns a cleared buffer with at least the given capacity. The buffer should be given back
+     * through {@link #release(ByteBuffer)} once it is no longer used.
+     * 
+     * @param capacity
+     * @return {@link ByteBuffer}
+     */
+    public ByteBuffer acquire(int capacity) {
+
+        if (capacity > this.maxPooledCapacity) {
+            this.allocatedCount.incrementAndGet();
+            return ByteBuffer.allocate(capacity);
+        }
+
+        int shift = shift(capacity);
+        ByteBuffer buffer = this.byteBuffers.poll(shift);
+        if (buffer == null) {
+            this.allocatedCount.incrementAndGet();
+            return ByteBuffer.allocate(1 << shift);
+        }
+
+        this.reusedCount.incrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a cleared char buffer with at least the given capacity. The buffer should be given
+     * back through {@link #release(CharBuffer)} once it is no longer used.
+     * 
+     * @param capacity
+     * @return {@link CharBuffer}
+     */
+    public CharBuffer acquireChars(int capacity) {
+
+        if (capacity > this.maxPooledCapacity) {
+            this.allocatedCount.incrementAndGet();
+            return CharBuffer.allocate(capacity);
+        }
+
+        int shift = shift(capacity);
+        CharBuffer buffer = this.charBuffers.poll(shift);
+        if (buffer == null) {
+            this.allocatedCount.incrementAndGet();
+            return CharBuffer.allocate(1 << shift);
+        }
+
+        this.reusedCount.incrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives the buffer back to the pool. Buffers not created by the pool are ignored.
+     * 
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+
+        if (isPoolable(buffer)) {
+            this.byteBuffers.offer(shift(buffer.capacity()), buffer, this.maxBuffersPerSize);
+        }
+    }
+
+    /**
+     * Gives the char buffer back to the pool. Buffers not created by the pool are ignored.
+     * 
+     * @param buffer
+     */
+    public void release(CharBuffer buffer) {
+
+        if (isPoolable(buffer)) {
+            this.charBuffers.offer(shift(buffer.capacity()), buffer, this.maxBuffersPerSize);
+        }
+    }
+
+    /**
+     * Number of buffers allocated because the pool had none of the requested capacity.
+     * 
+     * @return long
+     */
+    public long getAllocatedCount() {
+        return this.allocatedCount.get();
+    }
+
+    /**
+     * Number of buffers taken from the pool.
+     * 
+     * @return long
+     */
+    public long getReusedCount() {
+        return this.reusedCount.get();
+    }
+
+    private boolean isPoolable(Buffer buffer) {
+
+        if (buffer == null || !buffer.hasArray() || buffer.isReadOnly()) {
+            return false;
+        }
+
+        int capacity = buffer.capacity();
+        return capacity <= this.maxPooledCapacity && Integer.bitCount(capacity) == 1 && capacity >= 1 << MIN_SHIFT;
+    }
+
+    private static int shift(int capacity) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+    }
+
+    /**
+     * Buffers of one type, kept by capacity.
+     */
+    private static class Buffers<B extends Buffer> {
+
+        private final List<Queue<B>> buffers;
+        private final AtomicIntegerArray bufferCounts;
+
+        Buffers(int sizes) {
+
+            this.buffers = new ArrayList<Queue<B>>(sizes);
+            for (int i = 0; i < sizes; i++) {
+                this.buffers.add(new ConcurrentLinkedQueue<B>());
+            }
+            this.bufferCounts = new AtomicIntegerArray(sizes);
+        }
+
+        B poll(int shift) {
+
+            B buffer = this.buffers.get(shift).poll();
+            if (buffer != null) {
+                this.bufferCounts.decrementAndGet(shift);
+            }
+            return buffer;
+        }
+
+        void offer(int shift, B buffer, int maxBuffers) {
+
+            if (this.bufferCounts.incrementAndGet(shift) > maxBuffers) {
+                this.bufferCounts.decrementAndGet(shift);
+                return;
+            }
+            this.buffers.get(shift).offer(buffer);
+        }
+    }
+
+}
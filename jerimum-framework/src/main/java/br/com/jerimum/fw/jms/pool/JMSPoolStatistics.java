@@ -0,0 +1,39 @@
+package br.com.jerimum.fw.jms.pool;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of the {@link JMSPooledConnectionFactory} usage.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class JMSPoolStatistics implements Serializable {
+
+    private static final long serialVersionUID = -2871040617093418276L;
+
+    private final int connections;
+    private final int activeSessions;
+    private final int maxSessions;
+    private final long checkouts;
+    private final long checkoutFailures;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+
+    /**
+     * Returns the average time (ms) spent waiting for a session.
+     * 
+     * @return double
+     */
+    public double getAverageWaitTime() {
+        long attempts = this.checkouts + this.checkoutFailures;
+        return attempts > 0 ? (double) this.totalWaitTime / attempts : 0;
+    }
+
+}
@@ -0,0 +1,293 @@
+package br.com.jerimum.fw.jms.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.InfrastructureProxy;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.util.ClassUtils;
+
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bounded pool of JMS connections. Each pooled connection caches its sessions and the producers
+ * of each destination (see {@link CachingConnectionFactory}) and the number of sessions checked
+ * out at the same time is limited to <i>maxSessions</i>.
+ * <p>
+ * The pool can be shared by the JMS gateway and by the message listener containers. The session
+ * permits bound only the short-lived sessions of the gateway and of the templates: the containers
+ * must use {@link #getListenerConnectionFactory()}, whose sessions are held by the consumers for the
+ * lifetime of the container and are not counted, so scaling the consumers out never starves the
+ * gateway. The connection count is then <i>maxConnections</i> and the session count is at most
+ * <i>maxSessions</i> plus the maximum consumers of the containers.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSPooledConnectionFactory implements ConnectionFactory, DisposableBean {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 1;
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 10;
+    public static final long DEFAULT_CHECKOUT_TIMEOUT = 30000L;
+
+    @Getter
+    private final ConnectionFactory targetConnectionFactory;
+    @Getter
+    @Setter
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    @Getter
+    @Setter
+    private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+    @Getter
+    @Setter
+    private int maxSessions;
+    @Getter
+    @Setter
+    private long checkoutTimeout = DEFAULT_CHECKOUT_TIMEOUT;
+    @Getter
+    @Setter
+    private boolean cacheConsumers;
+
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong checkoutFailures = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    private volatile List<CachingConnectionFactory> connections;
+    private volatile Semaphore sessionPermits;
+    private final ConnectionFactory listenerConnectionFactory = new ListenerConnectionFactory();
+
+    public JMSPooledConnectionFactory(ConnectionFactory targetConnectionFactory) {
+        this.targetConnectionFactory = targetConnectionFactory;
+    }
+
+    @Override
+    public Connection createConnection() throws JMSException {
+
+        Connection connection = nextConnectionFactory().createConnection();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            ClassUtils.getAllInterfaces(connection), new PooledConnectionInvocationHandler(connection));
+    }
+
+    @Override
+    public Connection createConnection(String userName, String password) throws JMSException {
+        throw new javax.jms.IllegalStateException(
+            "JMSPooledConnectionFactory does not support custom username and password");
+    }
+
+    /**
+     * Returns the connection factory of the message listener containers. Its connections are taken
+     * from this pool but its sessions do not take a session permit. It is the same transactional
+     * resource as this pool, so the templates on this pool join the transaction of the consumer.
+     * 
+     * @return {@link ConnectionFactory}
+     */
+    public ConnectionFactory getListenerConnectionFactory() {
+        return this.listenerConnectionFactory;
+    }
+
+    /**
+     * Returns the current usage of the pool.
+     * 
+     * @return {@link JMSPoolStatistics}
+     */
+    public JMSPoolStatistics getStatistics() {
+
+        Semaphore permits = this.sessionPermits;
+        int limit = resolveMaxSessions();
+        int active = permits != null ? limit - permits.availablePermits() : 0;
+        List<CachingConnectionFactory> pool = this.connections;
+
+        return new JMSPoolStatistics(pool != null ? pool.size() : 0, active, limit, this.checkouts.get(),
+            this.checkoutFailures.get(), TimeUnit.NANOSECONDS.toMillis(this.totalWaitTime.get()),
+            TimeUnit.NANOSECONDS.toMillis(this.maxWaitTime.get()));
+    }
+
+    @Override
+    public synchronized void destroy() {
+
+        if (this.connections != null) {
+            for (CachingConnectionFactory factory : this.connections) {
+                factory.destroy();
+            }
+            this.connections = null;
+        }
+    }
+
+    private List<CachingConnectionFactory> getConnections() {
+
+        List<CachingConnectionFactory> pool = this.connections;
+        if (pool == null) {
+            synchronized (this) {
+                pool = this.connections;
+                if (pool == null) {
+                    pool = createPool();
+                    this.sessionPermits = new Semaphore(resolveMaxSessions(), true);
+                    this.connections = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private CachingConnectionFactory nextConnectionFactory() {
+
+        List<CachingConnectionFactory> pool = getConnections();
+        return pool.get((this.nextConnection.getAndIncrement() & Integer.MAX_VALUE) % pool.size());
+    }
+
+    private List<CachingConnectionFactory> createPool() {
+
+        List<CachingConnectionFactory> pool = new ArrayList<CachingConnectionFactory>();
+        for (int i = 0; i < Math.max(1, this.maxConnections); i++) {
+
+            CachingConnectionFactory factory = new CachingConnectionFactory(this.targetConnectionFactory);
+            factory.setSessionCacheSize(this.sessionCacheSize);
+            factory.setCacheProducers(true);
+            factory.setCacheConsumers(this.cacheConsumers);
+            factory.setReconnectOnException(true);
+            pool.add(factory);
+        }
+
+        LoggerUtils.logDebug(JMSPooledConnectionFactory.class,
+            "JMS pool created with {} connections and {} sessions at most", pool.size(), resolveMaxSessions());
+        return pool;
+    }
+
+    private int resolveMaxSessions() {
+        return this.maxSessions > 0 ? this.maxSessions : Math.max(1, this.maxConnections) * this.sessionCacheSize;
+    }
+
+    private void checkout() throws JMSException {
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = this.sessionPermits.tryAcquire(this.checkoutTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        long waitTime = System.nanoTime() - start;
+        this.totalWaitTime.addAndGet(waitTime);
+        long max = this.maxWaitTime.get();
+        while (waitTime > max && !this.maxWaitTime.compareAndSet(max, waitTime)) {
+            max = this.maxWaitTime.get();
+        }
+
+        if (!acquired) {
+            this.checkoutFailures.incrementAndGet();
+            throw new JMSException("Timeout waiting for a pooled JMS session after " + this.checkoutTimeout + " ms");
+        }
+        this.checkouts.incrementAndGet();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Hands out the pooled connections without session permits.
+     */
+    private class ListenerConnectionFactory implements ConnectionFactory, InfrastructureProxy {
+
+        @Override
+        public Connection createConnection() throws JMSException {
+            return nextConnectionFactory().createConnection();
+        }
+
+        @Override
+        public Connection createConnection(String userName, String password) throws JMSException {
+            return JMSPooledConnectionFactory.this.createConnection(userName, password);
+        }
+
+        @Override
+        public Object getWrappedObject() {
+            return JMSPooledConnectionFactory.this;
+        }
+    }
+
+    /**
+     * Checks out a session permit for every session created through the connection.
+     */
+    private class PooledConnectionInvocationHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        PooledConnectionInvocationHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getName().startsWith("create") && method.getName().endsWith("Session")) {
+
+                checkout();
+                try {
+
+                    Session session = (Session) JMSPooledConnectionFactory.invoke(this.target, method, args);
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), ClassUtils.getAllInterfaces(session),
+                        new PooledSessionInvocationHandler(session));
+
+                } catch (Throwable e) {
+                    sessionPermits.release();
+                    throw e;
+                }
+            }
+            return JMSPooledConnectionFactory.invoke(this.target, method, args);
+        }
+    }
+
+    /**
+     * Gives the session permit back when the session is closed.
+     */
+    private class PooledSessionInvocationHandler implements InvocationHandler {
+
+        private final Session target;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PooledSessionInvocationHandler(Session target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getName().equals("close") && method.getParameterTypes().length == 0) {
+                try {
+                    return JMSPooledConnectionFactory.invoke(this.target, method, args);
+                } finally {
+                    if (this.released.compareAndSet(false, true)) {
+                        sessionPermits.release();
+                    }
+                }
+            }
+            return JMSPooledConnectionFactory.invoke(this.target, method, args);
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+package br.com.jerimum.fw.jms.spool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Append-only circular journal of records kept in a memory-mapped file of fixed size. The read
+ * and write positions are stored in the file header, so the pending records survive a restart.
+ * <p>
+ * Each record is written as its length followed by its bytes. A negative length marks the point
+ * where the writer wrapped to the beginning of the data area.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSJournal implements Closeable {
+
+    private static final int MAGIC = 0x4A4D534A;
+    private static final int HEADER_SIZE = 20;
+    private static final int WRAP_MARKER = -1;
+
+    @Getter
+    private final File file;
+    @Getter
+    private final int capacity;
+    @Getter
+    private final JMSSpoolFsyncPolicy fsyncPolicy;
+
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+
+    private int readPosition;
+    private int writePosition;
+    private int count;
+    private boolean dirty;
+
+    /**
+     * Opens the journal, restoring the pending records of the file when it was created with the
+     * same capacity.
+     * 
+     * @param file
+     * @param capacity >> Size (bytes) of the data area.
+     * @param fsyncPolicy
+     * @throws IOException
+     */
+    public JMSJournal(File file, int capacity, JMSSpoolFsyncPolicy fsyncPolicy) throws IOException {
+
+        this.file = file;
+        this.capacity = capacity;
+        this.fsyncPolicy = fsyncPolicy;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+
+            FileChannel channel = this.randomAccessFile.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+
+        } catch (IOException e) {
+            this.randomAccessFile.close();
+            throw e;
+        }
+
+        if (this.buffer.getInt(0) == MAGIC && this.buffer.getInt(4) == capacity) {
+            this.readPosition = this.buffer.getInt(8);
+            this.writePosition = this.buffer.getInt(12);
+            this.count = this.buffer.getInt(16);
+        } else {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, capacity);
+            writeHeader();
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * Appends the record to the journal.
+     * 
+     * @param record
+     * @return <code>false</code> if there is no room for the record.
+     */
+    public synchronized boolean append(byte[] record) {
+
+        int size = 4 + record.length;
+        if (size > this.capacity) {
+            throw new IllegalArgumentException(
+                String.format("Record of %d bytes exceeds the journal capacity of %d bytes", size, this.capacity));
+        }
+
+        int position = allocate(size);
+        if (position < 0) {
+            return false;
+        }
+
+        this.buffer.putInt(HEADER_SIZE + position, record.length);
+        ByteBuffer data = this.buffer.duplicate();
+        data.position(HEADER_SIZE + position + 4);
+        data.put(record);
+
+        this.writePosition = position + size;
+        this.count++;
+        writeHeader();
+        sync();
+        return true;
+    }
+
+    /**
+     * Returns up to <i>maxRecords</i> of the oldest records without removing them.
+     * 
+     * @param maxRecords
+     * @return {@link List}<byte[]>
+     */
+    public synchronized List<byte[]> peek(int maxRecords) {
+
+        int records = Math.min(maxRecords, this.count);
+        List<byte[]> result = new ArrayList<byte[]>(records);
+
+        int position = this.readPosition;
+        for (int i = 0; i < records; i++) {
+
+            position = normalize(position);
+            int length = this.buffer.getInt(HEADER_SIZE + position);
+            byte[] record = new byte[length];
+            ByteBuffer data = this.buffer.duplicate();
+            data.position(HEADER_SIZE + position + 4);
+            data.get(record);
+            result.add(record);
+            position += 4 + length;
+        }
+        return result;
+    }
+
+    /**
+     * Removes the oldest records.
+     * 
+     * @param records
+     */
+    public synchronized void remove(int records) {
+
+        int toRemove = Math.min(records, this.count);
+        for (int i = 0; i < toRemove; i++) {
+            this.readPosition = normalize(this.readPosition);
+            this.readPosition += 4 + this.buffer.getInt(HEADER_SIZE + this.readPosition);
+        }
+
+        this.count -= toRemove;
+        if (this.count == 0) {
+            this.readPosition = 0;
+            this.writePosition = 0;
+        }
+        writeHeader();
+        sync();
+    }
+
+    /**
+     * Returns the number of records in the journal.
+     * 
+     * @return int
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * Forces the pending changes to the disk.
+     */
+    public synchronized void force() {
+
+        if (this.dirty) {
+            this.buffer.force();
+            this.dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        this.dirty = true;
+        force();
+        this.randomAccessFile.close();
+    }
+
+    /**
+     * Returns the position of the data area where the record must be written, or -1 if it does
+     * not fit.
+     */
+    private int allocate(int size) {
+
+        if (this.count == 0) {
+            this.readPosition = 0;
+            this.writePosition = 0;
+        } else if (this.readPosition == this.writePosition) {
+            return -1;
+        }
+
+        if (this.writePosition >= this.readPosition) {
+
+            if (this.capacity - this.writePosition >= size) {
+                return this.writePosition;
+            }
+
+            if (size <= this.readPosition) {
+                if (this.capacity - this.writePosition >= 4) {
+                    this.buffer.putInt(HEADER_SIZE + this.writePosition, WRAP_MARKER);
+                }
+                return 0;
+            }
+            return -1;
+        }
+
+        return this.readPosition - this.writePosition >= size ? this.writePosition : -1;
+    }
+
+    private int normalize(int position) {
+
+        if (position + 4 > this.capacity || this.buffer.getInt(HEADER_SIZE + position) == WRAP_MARKER) {
+            return 0;
+        }
+        return position;
+    }
+
+    private void writeHeader() {
+
+        this.buffer.putInt(8, this.readPosition);
+        this.buffer.putInt(12, this.writePosition);
+        this.buffer.putInt(16, this.count);
+    }
+
+    private void sync() {
+
+        this.dirty = true;
+        if (this.fsyncPolicy == JMSSpoolFsyncPolicy.ALWAYS) {
+            force();
+        }
+    }
+
+}
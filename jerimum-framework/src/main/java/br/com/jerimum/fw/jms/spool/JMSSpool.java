@@ -0,0 +1,473 @@
+package br.com.jerimum.fw.jms.spool;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jms.InvalidDestinationException;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.JmsSecurityException;
+import org.springframework.jms.MessageFormatException;
+import org.springframework.jms.MessageNotWriteableException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import br.com.jerimum.fw.exception.MessageException;
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import br.com.jerimum.fw.logging.LoggerUtils;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Local store-and-forward spool used by the JMS gateway while the broker is unavailable. The
+ * messages are appended to a memory-mapped {@link JMSJournal} and a background thread replays
+ * them in order, in transacted batches of <i>replayBatchSize</i> messages limited to
+ * <i>replayRate</i> messages per second, once the broker is back.
+ * <p>
+ * The messages are delivered at least once: a message is removed from the journal only after
+ * its batch is committed. They are replayed with the delivery mode, priority and expiration they
+ * were spooled with; the ones that expire while spooled are discarded.
+ * <p>
+ * A replay is retried only while the broker is unavailable (see {@link #isSpoolable(Throwable)}).
+ * A record that cannot be read or a message the broker rejects is appended to the
+ * <i>deadLetterFile</i> (length followed by the record, as in the journal) and skipped, so it
+ * does not block the messages behind it.
+ * <p>
+ * Only fire-and-forget messages are spooled: a request would time out long before its replay.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSSpool implements InitializingBean, DisposableBean {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+    public static final long DEFAULT_FSYNC_INTERVAL = 1000L;
+    public static final int DEFAULT_REPLAY_BATCH_SIZE = 100;
+    public static final double DEFAULT_REPLAY_RATE = 1000.0;
+    public static final long DEFAULT_RETRY_INTERVAL = 5000L;
+
+    @Getter
+    private final ConnectionFactory connectionFactory;
+    @Getter
+    private final File file;
+
+    /**
+     * Size (bytes) of the journal. Sends are rejected when it is full.
+     */
+    @Getter
+    @Setter
+    private int capacity = DEFAULT_CAPACITY;
+    @Getter
+    @Setter
+    private JMSSpoolFsyncPolicy fsyncPolicy = JMSSpoolFsyncPolicy.INTERVAL;
+    @Getter
+    @Setter
+    private long fsyncInterval = DEFAULT_FSYNC_INTERVAL;
+    @Getter
+    @Setter
+    private int replayBatchSize = DEFAULT_REPLAY_BATCH_SIZE;
+
+    /**
+     * Maximum number of messages replayed per second.
+     */
+    @Getter
+    @Setter
+    private double replayRate = DEFAULT_REPLAY_RATE;
+
+    /**
+     * Time (ms) waited before retrying the replay after a failure.
+     */
+    @Getter
+    @Setter
+    private long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+    /**
+     * File receiving the records that cannot be replayed. When <code>null</code> they are dropped.
+     */
+    @Getter
+    @Setter
+    private File deadLetterFile;
+
+    private final AtomicLong spooledCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+    private final Object replaySignal = new Object();
+
+    private volatile JMSJournal journal;
+    private JmsTemplate replayTemplate;
+    private RateLimiter rateLimiter;
+    private ExecutorService replayer;
+    private volatile boolean running;
+
+    public JMSSpool(ConnectionFactory connectionFactory, File file) {
+        this.connectionFactory = connectionFactory;
+        this.file = file;
+        this.deadLetterFile = new File(file.getPath() + ".dead");
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        start();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        stop();
+    }
+
+    /**
+     * Opens the journal and starts replaying the pending messages.
+     * 
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+
+        if (this.running) {
+            return;
+        }
+
+        this.journal = new JMSJournal(this.file, this.capacity, this.fsyncPolicy);
+        this.replayTemplate = new JmsTemplate(this.connectionFactory);
+        this.replayTemplate.setSessionTransacted(true);
+        this.rateLimiter = RateLimiter.create(this.replayRate);
+        this.running = true;
+
+        this.replayer = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-spool-%d").build());
+        this.replayer.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayLoop();
+            }
+        });
+
+        LoggerUtils.logDebug(JMSSpool.class, "JMS spool '{}' opened with {} pending messages", this.file,
+            this.journal.getCount());
+    }
+
+    /**
+     * Stops the replay and closes the journal. The pending messages are kept for the next start.
+     * 
+     * @throws IOException
+     */
+    public synchronized void stop() throws IOException {
+
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        this.replayer.shutdownNow();
+        try {
+            this.replayer.awaitTermination(this.retryInterval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.journal.close();
+    }
+
+    /**
+     * Appends the message to the journal, to be replayed with the default delivery mode, priority
+     * and time to live.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @return {@link Message} >> The recorded message, without <i>JMSMessageID</i>.
+     * @throws MessageException if the message cannot be spooled or the spool is full.
+     */
+    public Message spool(JMSMessageCreator<?> messageCreator, Queue queue) throws MessageException {
+        return spool(messageCreator, queue, null);
+    }
+
+    /**
+     * Appends the message to the journal, to be replayed with the quality of service of the
+     * template it would have been sent with.
+     * 
+     * @param messageCreator
+     * @param queue
+     * @param qosTemplate >> Template whose explicit QoS settings are kept with the message. The
+     *        defaults are used when it is <code>null</code> or has no explicit QoS enabled.
+     * @return {@link Message} >> The recorded message, without <i>JMSMessageID</i>.
+     * @throws MessageException if the message cannot be spooled or the spool is full.
+     */
+    public Message spool(JMSMessageCreator<?> messageCreator, Queue queue, JmsTemplate qosTemplate)
+        throws MessageException {
+
+        if (!this.running) {
+            throw new MessageException("JMS spool is not running!");
+        }
+
+        try {
+
+            JMSSpooledMessage spooled;
+            if (qosTemplate != null && qosTemplate.isExplicitQosEnabled()) {
+                spooled = JMSSpooledMessage.record(messageCreator, queue.getQueueName(),
+                    qosTemplate.getDeliveryMode(), qosTemplate.getPriority(), qosTemplate.getTimeToLive());
+            } else {
+                spooled = JMSSpooledMessage.record(messageCreator, queue.getQueueName());
+            }
+            if (!this.journal.append(spooled.toBytes())) {
+                throw new MessageException("JMS spool is full!");
+            }
+
+            this.spooledCount.incrementAndGet();
+            synchronized (this.replaySignal) {
+                this.replaySignal.notifyAll();
+            }
+            return spooled.getRecordedMessage();
+
+        } catch (MessageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessageException("Unable to spool message!", e);
+        }
+    }
+
+    /**
+     * Indicates whether the send failure is caused by the broker being unavailable, in which case
+     * the message can be spooled. Failures caused by the message or the destination cannot.
+     * 
+     * @param failure
+     * @return boolean
+     */
+    public boolean isSpoolable(Throwable failure) {
+
+        return failure instanceof JmsException && !(failure instanceof InvalidDestinationException
+            || failure instanceof JmsSecurityException || failure instanceof MessageFormatException
+            || failure instanceof MessageNotWriteableException);
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Returns <code>true</code> when there is no message waiting to be replayed.
+     * 
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return this.journal == null || this.journal.isEmpty();
+    }
+
+    /**
+     * Returns the number of messages waiting to be replayed.
+     * 
+     * @return int
+     */
+    public int getPendingCount() {
+        return this.journal != null ? this.journal.getCount() : 0;
+    }
+
+    public long getSpooledCount() {
+        return this.spooledCount.get();
+    }
+
+    public long getReplayedCount() {
+        return this.replayedCount.get();
+    }
+
+    /**
+     * Returns the number of messages discarded because they expired while spooled.
+     * 
+     * @return long
+     */
+    public long getExpiredCount() {
+        return this.expiredCount.get();
+    }
+
+    /**
+     * Returns the number of records that could not be replayed and were moved to the
+     * <i>deadLetterFile</i>.
+     * 
+     * @return long
+     */
+    public long getDeadLetteredCount() {
+        return this.deadLetteredCount.get();
+    }
+
+    private void replayLoop() {
+
+        while (this.running) {
+
+            try {
+
+                if (this.journal.isEmpty()) {
+                    synchronized (this.replaySignal) {
+                        this.replaySignal.wait(this.fsyncInterval);
+                    }
+                } else {
+                    replayBatch();
+                }
+
+                if (this.fsyncPolicy == JMSSpoolFsyncPolicy.INTERVAL) {
+                    this.journal.force();
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LoggerUtils.logWarning(JMSSpool.class, "Unable to replay spooled messages, retrying in {} ms: {}",
+                    this.retryInterval, e.getMessage());
+                try {
+                    Thread.sleep(this.retryInterval);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void replayBatch() throws IOException {
+
+        List<byte[]> records = this.journal.peek(Math.max(1, this.replayBatchSize));
+        this.rateLimiter.acquire(records.size());
+
+        /*
+         * the messages before a corrupt record are replayed, the record is dead-lettered once it
+         * reaches the head of the journal
+         */
+        List<JMSSpooledMessage> messages = new ArrayList<JMSSpooledMessage>(records.size());
+        for (byte[] record : records) {
+            try {
+                messages.add(JMSSpooledMessage.fromBytes(record));
+            } catch (Exception e) {
+                if (messages.isEmpty()) {
+                    deadLetter(record, e);
+                    return;
+                }
+                break;
+            }
+        }
+
+        try {
+
+            replay(messages.toArray(new JMSSpooledMessage[messages.size()]));
+
+        } catch (RuntimeException e) {
+            if (isSpoolable(e)) {
+                throw e;
+            }
+
+            /*
+             * the broker rejected a message of the batch: replays them one by one to find it
+             */
+            for (int i = 0; i < messages.size(); i++) {
+                try {
+                    replay(messages.get(i));
+                } catch (RuntimeException failure) {
+                    if (isSpoolable(failure)) {
+                        throw failure;
+                    }
+                    deadLetter(records.get(i), failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the messages in one transaction and removes them from the journal.
+     */
+    private void replay(final JMSSpooledMessage... messages) {
+
+        int replayed = this.replayTemplate.execute(new SessionCallback<Integer>() {
+            @Override
+            public Integer doInJms(Session session) throws JMSException {
+                return doReplay(session, messages);
+            }
+        }, true);
+
+        this.journal.remove(messages.length);
+        this.replayedCount.addAndGet(replayed);
+        this.expiredCount.addAndGet(messages.length - replayed);
+        LoggerUtils.logDebug(JMSSpool.class, "{} spooled messages replayed, {} expired, {} pending", replayed,
+            messages.length - replayed, this.journal.getCount());
+    }
+
+    /**
+     * Moves the record at the head of the journal to the dead-letter file.
+     */
+    private void deadLetter(byte[] record, Exception cause) throws IOException {
+
+        LoggerUtils.logError(JMSSpool.class, "Spooled message cannot be replayed, moving it to '"
+            + this.deadLetterFile + "'", cause);
+
+        if (this.deadLetterFile != null) {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(this.deadLetterFile, true));
+            try {
+                out.writeInt(record.length);
+                out.write(record);
+            } finally {
+                out.close();
+            }
+        }
+
+        this.journal.remove(1);
+        this.deadLetteredCount.incrementAndGet();
+    }
+
+    /**
+     * Sends the messages that have not expired in one transaction.
+     * 
+     * @return int >> The number of messages sent.
+     */
+    private int doReplay(Session session, JMSSpooledMessage[] messages) throws JMSException {
+
+        Map<String, MessageProducer> producers = new HashMap<String, MessageProducer>();
+        try {
+
+            int replayed = 0;
+            for (JMSSpooledMessage message : messages) {
+
+                long timeToLive = message.getTimeToLive();
+                if (timeToLive < 0) {
+                    continue;
+                }
+
+                MessageProducer producer = producers.get(message.getQueueName());
+                if (producer == null) {
+                    producer = session.createProducer(session.createQueue(message.getQueueName()));
+                    producers.put(message.getQueueName(), producer);
+                }
+                producer.send(message.createMessage(session), message.getDeliveryMode(), message.getPriority(),
+                    timeToLive);
+                replayed++;
+            }
+            session.commit();
+            return replayed;
+
+        } catch (JMSException e) {
+            JmsUtils.rollbackIfNecessary(session);
+            throw e;
+        } finally {
+            for (MessageProducer producer : producers.values()) {
+                JmsUtils.closeMessageProducer(producer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package br.com.jerimum.fw.jms.spool;
+
+/**
+ * Defines when the spool journal is forced to the disk.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public enum JMSSpoolFsyncPolicy {
+
+    /**
+     * Forces the journal after every change. No spooled message is lost on a crash, at the cost
+     * of one disk flush per message.
+     */
+    ALWAYS,
+
+    /**
+     * Forces the journal periodically, every <i>fsyncInterval</i> milliseconds.
+     */
+    INTERVAL,
+
+    /**
+     * Lets the operating system write the journal. Spooled messages survive a process crash but
+     * may be lost if the machine fails.
+     */
+    NEVER
+
+}
@@ -0,0 +1,512 @@
+package br.com.jerimum.fw.jms.spool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+import lombok.Getter;
+
+/**
+ * Message kept in the spool journal. It is captured by running the {@link JMSMessageCreator}
+ * against a recording session, so only the text, the bytes written with
+ * {@link BytesMessage#writeBytes(byte[])} (and read back with {@link BytesMessage#reset()} and
+ * {@link BytesMessage#readBytes(byte[], int)}, as the compression does), the properties and the
+ * <i>JMSCorrelationID</i> and <i>JMSType</i> headers are supported. Any other operation makes the
+ * message not spoolable. The typed property getters convert the values as the JMS specification
+ * defines.
+ * <p>
+ * The delivery mode, the priority and the expiration the message would have been sent with are
+ * kept along with it, so it is replayed with the same quality of service.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSSpooledMessage {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_MESSAGE = 0;
+    private static final byte TYPE_TEXT = 1;
+    private static final byte TYPE_BYTES = 2;
+
+    @Getter
+    private String queueName;
+    private byte type;
+    private String correlationID;
+    private String jmsType;
+    @Getter
+    private int deliveryMode = Message.DEFAULT_DELIVERY_MODE;
+    @Getter
+    private int priority = Message.DEFAULT_PRIORITY;
+
+    /**
+     * Time (ms since epoch) after which the message is discarded, or 0 when it never expires.
+     */
+    @Getter
+    private long expiration;
+    private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+    private String text;
+    private ByteArrayOutputStream bytes;
+    private int bytesPosition;
+
+    private Message recordedMessage;
+
+    private JMSSpooledMessage() {
+
+    }
+
+    /**
+     * Captures the message built by the message creator, to be sent with the default delivery
+     * mode, priority and time to live.
+     * 
+     * @param messageCreator
+     * @param queueName
+     * @return {@link JMSSpooledMessage}
+     * @throws JMSException
+     * @throws UnsupportedOperationException if the creator uses an unsupported operation.
+     */
+    public static JMSSpooledMessage record(JMSMessageCreator<?> messageCreator, String queueName)
+        throws JMSException {
+        return record(messageCreator, queueName, Message.DEFAULT_DELIVERY_MODE, Message.DEFAULT_PRIORITY,
+            Message.DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Captures the message built by the message creator.
+     * 
+     * @param messageCreator
+     * @param queueName
+     * @param deliveryMode
+     * @param priority
+     * @param timeToLive >> Time (ms) the message is kept, counted from now. 0 means unlimited.
+     * @return {@link JMSSpooledMessage}
+     * @throws JMSException
+     * @throws UnsupportedOperationException if the creator uses an unsupported operation.
+     */
+    public static JMSSpooledMessage record(JMSMessageCreator<?> messageCreator, String queueName, int deliveryMode,
+        int priority, long timeToLive) throws JMSException {
+
+        final JMSSpooledMessage spooled = new JMSSpooledMessage();
+        spooled.queueName = queueName;
+        spooled.deliveryMode = deliveryMode;
+        spooled.priority = priority;
+        spooled.expiration = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+
+        Session session = (Session) Proxy.newProxyInstance(JMSSpooledMessage.class.getClassLoader(),
+            new Class<?>[] { Session.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return spooled.createRecordedMessage(method, args);
+                }
+            });
+
+        messageCreator.createMessage(session);
+        return spooled;
+    }
+
+    /**
+     * Returns the message given to the message creator while recording.
+     * 
+     * @return {@link Message}
+     */
+    public Message getRecordedMessage() {
+        return this.recordedMessage;
+    }
+
+    /**
+     * Returns the time (ms) the message still has to live, 0 when it never expires or -1 when it
+     * has already expired.
+     * 
+     * @return long
+     */
+    public long getTimeToLive() {
+
+        if (this.expiration <= 0) {
+            return Message.DEFAULT_TIME_TO_LIVE;
+        }
+        long timeToLive = this.expiration - System.currentTimeMillis();
+        return timeToLive > 0 ? timeToLive : -1;
+    }
+
+    /**
+     * Builds the real message on the session.
+     * 
+     * @param session
+     * @return {@link Message}
+     * @throws JMSException
+     */
+    public Message createMessage(Session session) throws JMSException {
+
+        Message message;
+        if (this.type == TYPE_TEXT) {
+            message = session.createTextMessage(this.text);
+        } else if (this.type == TYPE_BYTES) {
+            BytesMessage bytesMessage = session.createBytesMessage();
+            bytesMessage.writeBytes(this.bytes.toByteArray());
+            message = bytesMessage;
+        } else {
+            message = session.createMessage();
+        }
+
+        message.setJMSCorrelationID(this.correlationID);
+        message.setJMSType(this.jmsType);
+        for (Entry<String, Object> property : this.properties.entrySet()) {
+            message.setObjectProperty(property.getKey(), property.getValue());
+        }
+        return message;
+    }
+
+    /**
+     * Serializes the message to be written in the journal.
+     * 
+     * @return byte[]
+     * @throws IOException
+     */
+    public byte[] toBytes() throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeByte(this.type);
+        writeString(data, this.queueName);
+        writeString(data, this.correlationID);
+        writeString(data, this.jmsType);
+        data.writeInt(this.deliveryMode);
+        data.writeInt(this.priority);
+        data.writeLong(this.expiration);
+
+        data.writeInt(this.properties.size());
+        for (Entry<String, Object> property : this.properties.entrySet()) {
+            writeString(data, property.getKey());
+            writeValue(data, property.getValue());
+        }
+
+        if (this.type == TYPE_TEXT) {
+            writeString(data, this.text);
+        } else if (this.type == TYPE_BYTES) {
+            data.writeInt(this.bytes.size());
+            this.bytes.writeTo(data);
+        }
+
+        data.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a message serialized by {@link #toBytes()}.
+     * 
+     * @param record
+     * @return {@link JMSSpooledMessage}
+     * @throws IOException
+     */
+    public static JMSSpooledMessage fromBytes(byte[] record) throws IOException {
+
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+        JMSSpooledMessage spooled = new JMSSpooledMessage();
+
+        spooled.type = data.readByte();
+        spooled.queueName = readString(data);
+        spooled.correlationID = readString(data);
+        spooled.jmsType = readString(data);
+        spooled.deliveryMode = data.readInt();
+        spooled.priority = data.readInt();
+        spooled.expiration = data.readLong();
+
+        int properties = data.readInt();
+        for (int i = 0; i < properties; i++) {
+            spooled.properties.put(readString(data), readValue(data));
+        }
+
+        if (spooled.type == TYPE_TEXT) {
+            spooled.text = readString(data);
+        } else if (spooled.type == TYPE_BYTES) {
+            byte[] body = new byte[data.readInt()];
+            data.readFully(body);
+            spooled.bytes = new ByteArrayOutputStream(body.length);
+            spooled.bytes.write(body);
+        }
+        return spooled;
+    }
+
+    private Object createRecordedMessage(Method method, Object[] args) {
+
+        String name = method.getName();
+        Class<?> messageType;
+        if (name.equals("createTextMessage")) {
+            this.type = TYPE_TEXT;
+            this.text = args != null ? (String) args[0] : null;
+            messageType = TextMessage.class;
+        } else if (name.equals("createBytesMessage")) {
+            this.type = TYPE_BYTES;
+            this.bytes = new ByteArrayOutputStream();
+            messageType = BytesMessage.class;
+        } else if (name.equals("createMessage")) {
+            this.type = TYPE_MESSAGE;
+            messageType = Message.class;
+        } else {
+            throw new UnsupportedOperationException("Spool does not support Session." + name);
+        }
+
+        this.recordedMessage = (Message) Proxy.newProxyInstance(JMSSpooledMessage.class.getClassLoader(),
+            new Class<?>[] { messageType }, new RecordingMessageHandler());
+        return this.recordedMessage;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+
+        if (value == null) {
+            data.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+
+        int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream data, Object value) throws IOException {
+
+        if (value instanceof String) {
+            data.writeByte('S');
+            writeString(data, (String) value);
+        } else if (value instanceof Integer) {
+            data.writeByte('I');
+            data.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            data.writeByte('J');
+            data.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            data.writeByte('Z');
+            data.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            data.writeByte('D');
+            data.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            data.writeByte('F');
+            data.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            data.writeByte('H');
+            data.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            data.writeByte('B');
+            data.writeByte((Byte) value);
+        } else {
+            throw new IOException("Unsupported property value: " + value);
+        }
+    }
+
+    private static Object readValue(DataInputStream data) throws IOException {
+
+        byte tag = data.readByte();
+        switch (tag) {
+            case 'S':
+                return readString(data);
+            case 'I':
+                return data.readInt();
+            case 'J':
+                return data.readLong();
+            case 'Z':
+                return data.readBoolean();
+            case 'D':
+                return data.readDouble();
+            case 'F':
+                return data.readFloat();
+            case 'H':
+                return data.readShort();
+            case 'B':
+                return data.readByte();
+            default:
+                throw new IOException("Unsupported property tag: " + tag);
+        }
+    }
+
+    /**
+     * Records the operations made by the message creator on the message.
+     */
+    private class RecordingMessageHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws JMSException {
+
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, name, args);
+            }
+
+            if (name.startsWith("set") && name.endsWith("Property")) {
+                properties.put((String) args[0], args[1]);
+                return null;
+            }
+
+            if (name.startsWith("get") && name.endsWith("Property")) {
+                return getProperty(name, properties.get(args[0]));
+            }
+
+            if (name.equals("propertyExists")) {
+                return properties.containsKey(args[0]);
+            }
+
+            if (name.equals("getPropertyNames")) {
+                return Collections.enumeration(properties.keySet());
+            }
+
+            if (name.equals("clearProperties")) {
+                properties.clear();
+                return null;
+            }
+
+            return invokeMessageMethod(name, args);
+        }
+
+        private Object invokeMessageMethod(String name, Object[] args) {
+
+            if (name.equals("setJMSCorrelationID")) {
+                correlationID = (String) args[0];
+            } else if (name.equals("getJMSCorrelationID")) {
+                return correlationID;
+            } else if (name.equals("setJMSType")) {
+                jmsType = (String) args[0];
+            } else if (name.equals("getJMSType")) {
+                return jmsType;
+            } else if (name.equals("getJMSMessageID")) {
+                return null;
+            } else if (name.equals("setText")) {
+                text = (String) args[0];
+            } else if (name.equals("getText")) {
+                return text;
+            } else if (name.equals("writeBytes") && args.length == 1) {
+                bytes.write((byte[]) args[0], 0, ((byte[]) args[0]).length);
+            } else if (name.equals("writeBytes")) {
+                bytes.write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+            } else if (name.equals("getBodyLength")) {
+                return (long) bytes.size();
+            } else if (name.equals("reset")) {
+                bytesPosition = 0;
+            } else if (name.equals("readBytes") && args.length == 1) {
+                return readBytes((byte[]) args[0], ((byte[]) args[0]).length);
+            } else if (name.equals("readBytes")) {
+                return readBytes((byte[]) args[0], (Integer) args[1]);
+            } else if (name.equals("clearBody")) {
+                text = null;
+                if (bytes != null) {
+                    bytes.reset();
+                    bytesPosition = 0;
+                }
+            } else {
+                throw new UnsupportedOperationException("Spool does not support Message." + name);
+            }
+            return null;
+        }
+
+        /**
+         * Converts the property value as the JMS specification defines for the typed getters: a
+         * missing property is read as <code>valueOf(null)</code>, which is <code>false</code> for
+         * boolean and a {@link NumberFormatException} for the integral types.
+         */
+        private Object getProperty(String getter, Object value) throws JMSException {
+
+            if (getter.equals("getObjectProperty")) {
+                return value;
+            }
+            if (getter.equals("getStringProperty")) {
+                return value != null ? value.toString() : null;
+            }
+            if (value == null || value instanceof String) {
+                return valueOf(getter, (String) value);
+            }
+
+            boolean integral = value instanceof Byte || value instanceof Short || value instanceof Integer
+                || value instanceof Long;
+            Number number = value instanceof Number ? (Number) value : null;
+            if (getter.equals("getBooleanProperty") && value instanceof Boolean) {
+                return value;
+            } else if (getter.equals("getByteProperty") && value instanceof Byte) {
+                return value;
+            } else if (getter.equals("getShortProperty") && (value instanceof Byte || value instanceof Short)) {
+                return number.shortValue();
+            } else if (getter.equals("getIntProperty") && integral && !(value instanceof Long)) {
+                return number.intValue();
+            } else if (getter.equals("getLongProperty") && integral) {
+                return number.longValue();
+            } else if (getter.equals("getFloatProperty") && value instanceof Float) {
+                return value;
+            } else if (getter.equals("getDoubleProperty") && (value instanceof Float || value instanceof Double)) {
+                return number.doubleValue();
+            }
+            throw new MessageFormatException(
+                "Property of type " + value.getClass().getSimpleName() + " cannot be read by " + getter);
+        }
+
+        private Object valueOf(String getter, String value) throws JMSException {
+
+            if (getter.equals("getBooleanProperty")) {
+                return Boolean.valueOf(value);
+            } else if (getter.equals("getByteProperty")) {
+                return Byte.valueOf(value);
+            } else if (getter.equals("getShortProperty")) {
+                return Short.valueOf(value);
+            } else if (getter.equals("getIntProperty")) {
+                return Integer.valueOf(value);
+            } else if (getter.equals("getLongProperty")) {
+                return Long.valueOf(value);
+            } else if (getter.equals("getFloatProperty")) {
+                return Float.valueOf(value);
+            } else if (getter.equals("getDoubleProperty")) {
+                return Double.valueOf(value);
+            }
+            throw new MessageFormatException("Spool does not support Message." + getter);
+        }
+
+        private int readBytes(byte[] buffer, int length) {
+
+            byte[] body = bytes.toByteArray();
+            if (bytesPosition >= body.length) {
+                return -1;
+            }
+
+            int count = Math.min(length, body.length - bytesPosition);
+            System.arraycopy(body, bytesPosition, buffer, 0, count);
+            bytesPosition += count;
+            return count;
+        }
+
+        private Object invokeObjectMethod(Object proxy, String name, Object[] args) {
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return "Spooled message to '" + queueName + "'";
+        }
+    }
+
+}
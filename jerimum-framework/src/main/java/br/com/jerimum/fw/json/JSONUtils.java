@@ -1,5 +1,6 @@
 package br.com.jerimum.fw.json;
 
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.text.DateFormat;
 
@@ -49,6 +50,12 @@ public final class JSONUtils {
         Gson gson = new GsonBuilder().setDateFormat(DateFormat.FULL, DateFormat.FULL).create();
         return gson.fromJson(jsonText, type);
     }
+
+    public static <T> T deserialize(Type type, Reader json) {
+
+        Gson gson = new GsonBuilder().setDateFormat(DateFormat.FULL, DateFormat.FULL).create();
+        return gson.fromJson(json, type);
+    }
     
     public static <T> T deserialize(TypeToken<T> typeToken, String jsonText, Class<?> deserializerType, JsonDeserializer<?> deserializer) {
     	GsonBuilder gsonBuilder = new GsonBuilder();
@@ -0,0 +1,191 @@
+package br.com.jerimum.fw.jms.spool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the circular journal of the spool.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSJournalTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private JMSJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = new File(this.folder.getRoot(), "spool.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        if (this.journal != null) {
+            this.journal.close();
+        }
+    }
+
+    @Test
+    public void peekKeepsTheRecordsUntilRemoved() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 1024, JMSSpoolFsyncPolicy.NEVER);
+        append("r1", "r2", "r3");
+
+        assertEquals(list("r1", "r2"), peek(2));
+        assertEquals(3, this.journal.getCount());
+
+        this.journal.remove(1);
+        assertEquals(list("r2", "r3"), peek(10));
+
+        this.journal.remove(10);
+        assertTrue(this.journal.isEmpty());
+        assertTrue(peek(10).isEmpty());
+    }
+
+    @Test
+    public void appendWrapsWithMarker() throws IOException {
+
+        // records of 4 + 10 bytes: 4 of them leave 8 bytes at the end, room for the wrap marker
+        this.journal = new JMSJournal(this.file, 64, JMSSpoolFsyncPolicy.NEVER);
+        append("record-001", "record-002", "record-003", "record-004");
+        this.journal.remove(2);
+
+        assertTrue(this.journal.append(bytes("record-005")));
+        assertTrue(this.journal.append(bytes("record-006")));
+        assertFalse(this.journal.append(bytes("record-007")));
+
+        assertEquals(list("record-003", "record-004", "record-005", "record-006"), peek(10));
+        this.journal.remove(3);
+        assertEquals(list("record-006"), peek(10));
+    }
+
+    @Test
+    public void appendWrapsWithoutRoomForMarker() throws IOException {
+
+        // records of 4 + 10 bytes: 2 of them leave 2 bytes at the end, not enough for the marker
+        this.journal = new JMSJournal(this.file, 30, JMSSpoolFsyncPolicy.NEVER);
+        append("record-001", "record-002");
+        this.journal.remove(1);
+
+        assertTrue(this.journal.append(bytes("record-003")));
+        assertFalse(this.journal.append(bytes("record-004")));
+        assertEquals(list("record-002", "record-003"), peek(10));
+    }
+
+    @Test
+    public void appendRejectsWhenFull() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 64, JMSSpoolFsyncPolicy.NEVER);
+        append("record-001", "record-002", "record-003", "record-004");
+
+        assertFalse(this.journal.append(bytes("record-005")));
+        assertEquals(4, this.journal.getCount());
+
+        this.journal.remove(4);
+        assertTrue(this.journal.append(bytes("record-005")));
+        assertEquals(list("record-005"), peek(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void appendRejectsRecordLargerThanCapacity() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 16, JMSSpoolFsyncPolicy.NEVER);
+        this.journal.append(new byte[13]);
+    }
+
+    @Test
+    public void keepsOrderAcrossManyWraps() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 1000, JMSSpoolFsyncPolicy.NEVER);
+        int appended = 0;
+        int removed = 0;
+        for (int round = 0; round < 200; round++) {
+
+            String padding = round % 7 == 0 ? "-----------------------------------" : "";
+            while (this.journal.append(bytes(String.format("%05d%s", appended, padding)))) {
+                appended++;
+            }
+
+            for (String record : peek(3)) {
+                assertEquals(String.format("%05d", removed), record.substring(0, 5));
+                removed++;
+            }
+            this.journal.remove(3);
+        }
+        assertEquals(appended - removed, this.journal.getCount());
+    }
+
+    @Test
+    public void restoresPendingRecordsOnReopen() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 64, JMSSpoolFsyncPolicy.ALWAYS);
+        append("record-001", "record-002", "record-003", "record-004");
+        this.journal.remove(2);
+        append("record-005");
+        this.journal.close();
+
+        this.journal = new JMSJournal(this.file, 64, JMSSpoolFsyncPolicy.ALWAYS);
+        assertEquals(3, this.journal.getCount());
+        assertEquals(list("record-003", "record-004", "record-005"), peek(10));
+    }
+
+    @Test
+    public void discardsRecordsOnReopenWithOtherCapacity() throws IOException {
+
+        this.journal = new JMSJournal(this.file, 64, JMSSpoolFsyncPolicy.ALWAYS);
+        append("record-001");
+        this.journal.close();
+
+        this.journal = new JMSJournal(this.file, 128, JMSSpoolFsyncPolicy.ALWAYS);
+        assertTrue(this.journal.isEmpty());
+    }
+
+    private void append(String... records) {
+
+        for (String record : records) {
+            assertTrue(this.journal.append(bytes(record)));
+        }
+    }
+
+    private List<String> peek(int maxRecords) {
+
+        List<String> records = new ArrayList<String>();
+        for (byte[] record : this.journal.peek(maxRecords)) {
+            records.add(new String(record, UTF_8));
+        }
+        return records;
+    }
+
+    private static byte[] bytes(String record) {
+        return record.getBytes(UTF_8);
+    }
+
+    private static List<String> list(String... records) {
+
+        List<String> list = new ArrayList<String>();
+        for (String record : records) {
+            list.add(record);
+        }
+        return list;
+    }
+
+}
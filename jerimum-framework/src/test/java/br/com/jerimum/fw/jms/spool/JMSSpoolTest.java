@@ -0,0 +1,229 @@
+package br.com.jerimum.fw.jms.spool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jms.core.JmsTemplate;
+
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+
+/**
+ * Tests of the spool replay against an embedded broker.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSSpoolTest {
+
+    private static final String BROKER_NAME = "jms-spool-test";
+    private static final long RECEIVE_TIMEOUT = 5000L;
+
+    private static BrokerService broker;
+    private static ConnectionFactory connectionFactory;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Queue queue;
+    private JMSSpool spool;
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+
+        broker = new BrokerService();
+        broker.setBrokerName(BROKER_NAME);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://" + BROKER_NAME + "?create=false");
+    }
+
+    @AfterClass
+    public static void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.queue = new ActiveMQQueue("spool.test." + System.nanoTime());
+        this.spool = new JMSSpool(connectionFactory, new File(this.folder.getRoot(), "spool.journal"));
+        this.spool.setCapacity(64 * 1024);
+        this.spool.setReplayBatchSize(3);
+        this.spool.setRetryInterval(100);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.spool.stop();
+    }
+
+    @Test
+    public void replaysInOrderWithTheTemplateQoS() throws Exception {
+
+        JmsTemplate template = new JmsTemplate(connectionFactory);
+        template.setExplicitQosEnabled(true);
+        template.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        template.setPriority(7);
+        template.setTimeToLive(60000);
+
+        this.spool.start();
+        for (int i = 0; i < 10; i++) {
+            this.spool.spool(text("message-" + i), this.queue, template);
+        }
+        awaitEmpty();
+
+        Connection connection = connectionFactory.createConnection();
+        try {
+
+            MessageConsumer consumer = consumer(connection);
+            for (int i = 0; i < 10; i++) {
+                Message message = consumer.receive(RECEIVE_TIMEOUT);
+                assertEquals("message-" + i, ((TextMessage) message).getText());
+                assertEquals(DeliveryMode.NON_PERSISTENT, message.getJMSDeliveryMode());
+                assertEquals(7, message.getJMSPriority());
+                assertTrue(message.getJMSExpiration() > System.currentTimeMillis());
+            }
+            assertNull(consumer.receiveNoWait());
+
+        } finally {
+            connection.close();
+        }
+        assertEquals(10, this.spool.getSpooledCount());
+        assertEquals(10, this.spool.getReplayedCount());
+    }
+
+    @Test
+    public void replaysPendingMessagesOnStartAndDiscardsExpired() throws Exception {
+
+        JMSJournal journal = new JMSJournal(this.spool.getFile(), this.spool.getCapacity(),
+            JMSSpoolFsyncPolicy.ALWAYS);
+        journal.append(JMSSpooledMessage.record(text("expired"), this.queue.getQueueName(),
+            DeliveryMode.NON_PERSISTENT, 4, 1).toBytes());
+        journal.append(JMSSpooledMessage.record(text("kept"), this.queue.getQueueName()).toBytes());
+        journal.close();
+        Thread.sleep(10);
+
+        this.spool.start();
+        awaitEmpty();
+
+        Connection connection = connectionFactory.createConnection();
+        try {
+
+            MessageConsumer consumer = consumer(connection);
+            Message message = consumer.receive(RECEIVE_TIMEOUT);
+            assertEquals("kept", ((TextMessage) message).getText());
+            assertEquals(DeliveryMode.PERSISTENT, message.getJMSDeliveryMode());
+            assertEquals(Message.DEFAULT_PRIORITY, message.getJMSPriority());
+            assertEquals(0, message.getJMSExpiration());
+            assertNull(consumer.receiveNoWait());
+
+        } finally {
+            connection.close();
+        }
+        assertEquals(1, this.spool.getReplayedCount());
+        assertEquals(1, this.spool.getExpiredCount());
+    }
+
+    @Test
+    public void deadLettersRecordsThatCannotBeReplayed() throws Exception {
+
+        JMSJournal journal = new JMSJournal(this.spool.getFile(), this.spool.getCapacity(),
+            JMSSpoolFsyncPolicy.ALWAYS);
+        journal.append(JMSSpooledMessage.record(text("first"), this.queue.getQueueName()).toBytes());
+        journal.append(new byte[] { 9, 9, 9 });
+        byte[] invalid = JMSSpooledMessage.record(new JMSMessageCreator<TextMessage>() {
+            @Override
+            public void setParams(TextMessage message) throws JMSException {
+                message.setText("rejected");
+                message.setStringProperty("", "invalid property name");
+            }
+        }, this.queue.getQueueName()).toBytes();
+        journal.append(invalid);
+        journal.append(JMSSpooledMessage.record(text("last"), this.queue.getQueueName()).toBytes());
+        journal.close();
+
+        this.spool.start();
+        awaitEmpty();
+
+        Connection connection = connectionFactory.createConnection();
+        try {
+
+            MessageConsumer consumer = consumer(connection);
+            assertEquals("first", ((TextMessage) consumer.receive(RECEIVE_TIMEOUT)).getText());
+            assertEquals("last", ((TextMessage) consumer.receive(RECEIVE_TIMEOUT)).getText());
+            assertNull(consumer.receiveNoWait());
+
+        } finally {
+            connection.close();
+        }
+        assertEquals(2, this.spool.getReplayedCount());
+        assertEquals(2, this.spool.getDeadLetteredCount());
+
+        DataInputStream deadLetters = new DataInputStream(new FileInputStream(this.spool.getDeadLetterFile()));
+        try {
+            byte[] corrupt = new byte[deadLetters.readInt()];
+            deadLetters.readFully(corrupt);
+            assertEquals(3, corrupt.length);
+            byte[] rejected = new byte[deadLetters.readInt()];
+            deadLetters.readFully(rejected);
+            assertArrayEquals(invalid, rejected);
+            assertEquals(-1, deadLetters.read());
+        } finally {
+            deadLetters.close();
+        }
+    }
+
+    private MessageConsumer consumer(Connection connection) throws JMSException {
+
+        connection.start();
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        return session.createConsumer(this.queue);
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT;
+        while (!this.spool.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(this.spool.isEmpty());
+    }
+
+    private static JMSMessageCreator<TextMessage> text(final String text) {
+
+        return new JMSMessageCreator<TextMessage>() {
+            @Override
+            public void setParams(TextMessage message) throws JMSException {
+                message.setText(text);
+            }
+        };
+    }
+
+}
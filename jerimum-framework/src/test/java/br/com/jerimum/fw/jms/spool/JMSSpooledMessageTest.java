@@ -0,0 +1,86 @@
+package br.com.jerimum.fw.jms.spool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.jerimum.fw.jms.JMSMessageCreator;
+
+/**
+ * Tests of the message recorded in the spool.
+ * 
+ * @author Dali Freire - dalifreire@gmail.com
+ */
+public class JMSSpooledMessageTest {
+
+    private JMSSpooledMessage spooled;
+    private Message message;
+
+    @Before
+    public void setUp() throws JMSException {
+
+        this.spooled = JMSSpooledMessage.record(new JMSMessageCreator<TextMessage>() {
+            @Override
+            public void setParams(TextMessage message) throws JMSException {
+                message.setText("text");
+                message.setIntProperty("int", 12);
+                message.setStringProperty("string", "34");
+                message.setBooleanProperty("boolean", true);
+                message.setFloatProperty("float", 1.5f);
+            }
+        }, "queue", DeliveryMode.NON_PERSISTENT, 9, 60000);
+        this.message = this.spooled.getRecordedMessage();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void missingIntegralPropertyThrows() throws JMSException {
+        this.message.getIntProperty("missing");
+    }
+
+    @Test
+    public void missingPropertiesFollowTheSpecification() throws JMSException {
+
+        assertFalse(this.message.getBooleanProperty("missing"));
+        assertNull(this.message.getStringProperty("missing"));
+        assertNull(this.message.getObjectProperty("missing"));
+    }
+
+    @Test
+    public void propertiesAreConverted() throws JMSException {
+
+        assertEquals(12, this.message.getIntProperty("int"));
+        assertEquals(12L, this.message.getLongProperty("int"));
+        assertEquals("12", this.message.getStringProperty("int"));
+        assertEquals(34, this.message.getIntProperty("string"));
+        assertEquals(34d, this.message.getDoubleProperty("string"), 0d);
+        assertTrue(this.message.getBooleanProperty("boolean"));
+        assertEquals(1.5d, this.message.getDoubleProperty("float"), 0d);
+    }
+
+    @Test(expected = MessageFormatException.class)
+    public void incompatiblePropertyThrows() throws JMSException {
+        this.message.getShortProperty("int");
+    }
+
+    @Test
+    public void keepsTheQoSInTheRecord() throws Exception {
+
+        JMSSpooledMessage restored = JMSSpooledMessage.fromBytes(this.spooled.toBytes());
+        assertEquals("queue", restored.getQueueName());
+        assertEquals(DeliveryMode.NON_PERSISTENT, restored.getDeliveryMode());
+        assertEquals(9, restored.getPriority());
+        assertEquals(this.spooled.getExpiration(), restored.getExpiration());
+        assertTrue(restored.getTimeToLive() > 0 && restored.getTimeToLive() <= 60000);
+    }
+
+}